@@ -0,0 +1,86 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.PipeContext;
+import com.orrin.util.concurrent.PipeException;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 各基准测试共用的负载构造与等待工具
+ *
+ * @author orrin on 2026-10-17
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static byte[] newPayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * 模拟一个CPU密集的小计算，避免被JIT优化掉
+     */
+    static long checksum(byte[] payload, int from, int to) {
+        long h = 1125899906842597L;
+        for(int i=from; i<to; i++){
+            h = 31 * h + payload[i];
+        }
+        return h;
+    }
+
+    static PipeContext printingContext() {
+        return new PipeContext() {
+            @Override
+            public void handleError(PipeException exp) {
+                exp.printStackTrace();
+            }
+        };
+    }
+
+    static void shutdownQuietly(ExecutorService executorService) {
+        if(null == executorService){
+            return;
+        }
+        executorService.shutdownNow();
+        try {
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在流水线中传递的负载，由最后一个阶段标记完成并唤醒提交它的基准测试线程，
+     * 从而测得单个元素穿过整条流水线的端到端延迟
+     */
+    static final class Envelope {
+        final byte[] payload;
+        final Thread owner = Thread.currentThread();
+        volatile long checksum;
+        volatile boolean done;
+
+        Envelope(byte[] payload) {
+            this.payload = payload;
+        }
+
+        void complete(long checksum) {
+            this.checksum = checksum;
+            this.done = true;
+            LockSupport.unpark(owner);
+        }
+
+        long await() {
+            while(!done){
+                LockSupport.park(this);
+            }
+            return checksum;
+        }
+    }
+}
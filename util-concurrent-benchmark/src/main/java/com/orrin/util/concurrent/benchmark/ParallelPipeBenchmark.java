@@ -0,0 +1,185 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.AbstractForkJoinPipe;
+import com.orrin.util.concurrent.AbstractParallePipe;
+import com.orrin.util.concurrent.SplittableTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AbstractParallePipe扇出基准测试：每个输入被切分为fanOut个子任务并行计算后合并
+ * 同时以相同的负载对比基于ForkJoinPool、子任务可递归拆分的AbstractForkJoinPipe
+ * 运行方式：java -jar target/benchmarks.jar ParallelPipeBenchmark
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelPipeBenchmark {
+
+    @Param({"2", "8"})
+    public int fanOut;
+
+    @Param({"4096", "262144"})
+    public int payloadSize;
+
+    @Param({"2", "4"})
+    public int workerCount;
+
+    private ExecutorService executorService;
+    private ForkJoinPool forkJoinPool;
+    private ChecksumParallelPipe pipe;
+    private ChecksumForkJoinPipe forkJoinPipe;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = BenchmarkSupport.newPayload(payloadSize);
+        executorService = Executors.newFixedThreadPool(workerCount);
+        pipe = new ChecksumParallelPipe(executorService, fanOut);
+        pipe.init(BenchmarkSupport.printingContext());
+
+        forkJoinPool = new ForkJoinPool(workerCount);
+        forkJoinPipe = new ChecksumForkJoinPipe(forkJoinPool, payloadSize / fanOut);
+        forkJoinPipe.init(BenchmarkSupport.printingContext());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.shutdownQuietly(executorService);
+        BenchmarkSupport.shutdownQuietly(forkJoinPool);
+    }
+
+    @Benchmark
+    public Long doProcess() throws Exception {
+        return pipe.doProcess(payload);
+    }
+
+    @Benchmark
+    public Long forkJoinDoProcess() throws Exception {
+        return forkJoinPipe.doProcess(payload);
+    }
+
+    static class ChecksumParallelPipe extends AbstractParallePipe<byte[], Long, Long> {
+        private final int fanOut;
+
+        ChecksumParallelPipe(ExecutorService executorService, int fanOut) {
+            super(null, executorService);
+            this.fanOut = fanOut;
+        }
+
+        @Override
+        protected List<Callable<Long>> buildTasks(final byte[] input) throws Exception {
+            List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(fanOut);
+            int chunk = (input.length + fanOut - 1) / fanOut;
+            for(int from=0; from<input.length; from+=chunk){
+                final int start = from;
+                final int end = Math.min(input.length, from + chunk);
+                tasks.add(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return BenchmarkSupport.checksum(input, start, end);
+                    }
+                });
+            }
+            return tasks;
+        }
+
+        @Override
+        protected Long combineResults(List<Future<Long>> subTaskResults) throws Exception {
+            long result = 0;
+            for(Future<Long> future : subTaskResults){
+                result += future.get();
+            }
+            return result;
+        }
+    }
+
+    static class ChecksumForkJoinPipe extends AbstractForkJoinPipe<byte[], Long, Long> {
+        private final int threshold;
+
+        ChecksumForkJoinPipe(ForkJoinPool forkJoinPool, int threshold) {
+            super(forkJoinPool);
+            this.threshold = Math.max(1, threshold);
+        }
+
+        @Override
+        protected List<SplittableTask<Long>> buildTasks(byte[] input) throws Exception {
+            List<SplittableTask<Long>> tasks = new ArrayList<SplittableTask<Long>>(1);
+            tasks.add(new ChunkTask(input, 0, input.length, threshold));
+            return tasks;
+        }
+
+        @Override
+        protected Long identity(byte[] input) {
+            return 0L;
+        }
+
+        @Override
+        protected Long accumulate(Long partial, Long subTaskResult) {
+            return partial + subTaskResult;
+        }
+
+        @Override
+        protected Long combine(Long left, Long right) {
+            return left + right;
+        }
+    }
+
+    static class ChunkTask implements SplittableTask<Long> {
+        private final byte[] payload;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ChunkTask(byte[] payload, int from, int to, int threshold) {
+            this.payload = payload;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public boolean shouldSplit() {
+            return to - from > threshold;
+        }
+
+        @Override
+        public List<SplittableTask<Long>> split() {
+            int mid = (from + to) >>> 1;
+            List<SplittableTask<Long>> children = new ArrayList<SplittableTask<Long>>(2);
+            children.add(new ChunkTask(payload, from, mid, threshold));
+            children.add(new ChunkTask(payload, mid, to, threshold));
+            return children;
+        }
+
+        @Override
+        public Long compute() throws Exception {
+            return BenchmarkSupport.checksum(payload, from, to);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.AbsractPipe;
+import com.orrin.util.concurrent.PipeException;
+import com.orrin.util.concurrent.SimplePipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimplePipeline端到端基准测试
+ * 每次操作提交一个元素并等待它穿过全部阶段，Throughput给出吞吐量，SampleTime给出p50/p99/p99.9延迟
+ * 运行方式：java -jar target/benchmarks.jar PipelineBenchmark -t 8
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    /**
+     * WORKER：addAsWorkerThreadBasedPipe；THREAD_POOL：addAsThreadBasedPipe
+     */
+    @Param({"WORKER", "THREAD_POOL"})
+    public String stageMode;
+
+    @Param({"1", "4", "8"})
+    public int stageCount;
+
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    @Param({"1", "4"})
+    public int workerCount;
+
+    private SimplePipeline<BenchmarkSupport.Envelope, BenchmarkSupport.Envelope> pipeline;
+    private final List<ExecutorService> executors = new ArrayList<ExecutorService>();
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = BenchmarkSupport.newPayload(payloadSize);
+        pipeline = new SimplePipeline<BenchmarkSupport.Envelope, BenchmarkSupport.Envelope>();
+
+        for(int i=0; i<stageCount; i++){
+            AbsractPipe<BenchmarkSupport.Envelope, BenchmarkSupport.Envelope> stage = newStage(i == stageCount - 1);
+            if("WORKER".equals(stageMode)){
+                pipeline.addAsWorkerThreadBasedPipe(stage, workerCount);
+            }else{
+                ExecutorService executorService = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>());
+                executors.add(executorService);
+                pipeline.addAsThreadBasedPipe(stage, executorService);
+            }
+        }
+
+        pipeline.init(BenchmarkSupport.printingContext());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+        for(ExecutorService executorService : executors){
+            BenchmarkSupport.shutdownQuietly(executorService);
+        }
+        executors.clear();
+    }
+
+    @Benchmark
+    public long process() throws InterruptedException {
+        BenchmarkSupport.Envelope envelope = new BenchmarkSupport.Envelope(payload);
+        pipeline.process(envelope);
+        return envelope.await();
+    }
+
+    private static AbsractPipe<BenchmarkSupport.Envelope, BenchmarkSupport.Envelope> newStage(final boolean last) {
+        return new AbsractPipe<BenchmarkSupport.Envelope, BenchmarkSupport.Envelope>() {
+            @Override
+            public BenchmarkSupport.Envelope doProcess(BenchmarkSupport.Envelope input) throws PipeException {
+                long checksum = BenchmarkSupport.checksum(input.payload, 0, input.payload.length);
+                if(last){
+                    input.complete(checksum);
+                    return null;
+                }
+                return input;
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimiter.tryAcquire的吞吐量，所有线程共用一个RateLimiter
+ * permitsPerSecond足够大时几乎每次都取得许可，测得的是一次CAS的开销；
+ * 较小时几乎每次都被拒绝，测得的是只读的快速失败路径
+ * 运行方式：java -jar target/benchmarks.jar RateLimiterBenchmark -t 1 （多线程竞争时改为-t 4等）
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"1.0E12", "1000"})
+    public double permitsPerSecond;
+
+    @Param({"1"})
+    public int burst;
+
+    private RateLimiter rateLimiter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rateLimiter = new RateLimiter(permitsPerSecond, burst);
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        return rateLimiter.tryAcquire();
+    }
+}
@@ -0,0 +1,112 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.CompletionHandle;
+import com.orrin.util.concurrent.RingBufferSerializer;
+import com.orrin.util.concurrent.TaskProcssor;
+import com.orrin.util.concurrent.TaskTranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 比较AbstractSerializer与RingBufferSerializer每次提交的对象分配量
+ * 结果须配合gc分析器查看gc.alloc.rate.norm（每次操作分配的字节数）
+ * 运行方式：java -jar target/benchmarks.jar SerializerAllocationBenchmark -prof gc
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerAllocationBenchmark {
+    private static final int PAYLOAD_SIZE = 64;
+    private static final int CAPACITY = 1024;
+
+    private SerializerBenchmark.ChecksumSerializer serializer;
+    private RingBufferSerializer<ChecksumTask, Request> ringBufferSerializer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = new SerializerBenchmark.ChecksumSerializer(CAPACITY);
+        serializer.init();
+
+        ringBufferSerializer = new RingBufferSerializer<ChecksumTask, Request>(CAPACITY, new Supplier<ChecksumTask>() {
+            @Override
+            public ChecksumTask get() {
+                return new ChecksumTask();
+            }
+        }, new TaskProcssor<ChecksumTask, Request>() {
+            @Override
+            public Request doProcess(ChecksumTask task) throws Exception {
+                Request request = task.request;
+                request.checksum = BenchmarkSupport.checksum(request.payload, 0, request.payload.length);
+                return request;
+            }
+        });
+        ringBufferSerializer.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializer.shutdown();
+        ringBufferSerializer.shutdown();
+    }
+
+    @Benchmark
+    public Long abstractSerializer(Caller caller) throws Exception {
+        return serializer.service(caller.request.payload).get();
+    }
+
+    @Benchmark
+    public long ringBufferSerializer(Caller caller) throws Exception {
+        ringBufferSerializer.submit(TRANSLATOR, caller.request, caller.handle);
+        return caller.handle.await().checksum;
+    }
+
+    private static final TaskTranslator<ChecksumTask, Request> TRANSLATOR = new TaskTranslator<ChecksumTask, Request>() {
+        @Override
+        public void translateTo(ChecksumTask task, Request arg) {
+            task.request = arg;
+        }
+    };
+
+    /**
+     * 每个基准测试线程各自持有的请求与结果凭据
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+        final Request request = new Request(BenchmarkSupport.newPayload(PAYLOAD_SIZE));
+        final CompletionHandle<Request> handle = new CompletionHandle<Request>();
+    }
+
+    /**
+     * 由提交方持有并重复使用的请求，处理结果直接写回其中
+     */
+    static final class Request {
+        final byte[] payload;
+        long checksum;
+
+        Request(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    static final class ChecksumTask {
+        Request request;
+    }
+}
@@ -0,0 +1,78 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.AbstractSerializer;
+import com.orrin.util.concurrent.TaskProcssor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AbstractSerializer.service基准测试：提交任务并等待串行工作者线程返回结果
+ * 运行方式：java -jar target/benchmarks.jar SerializerBenchmark -t 4
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    @Param({"1024"})
+    public int queueCapacity;
+
+    private ChecksumSerializer serializer;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = BenchmarkSupport.newPayload(payloadSize);
+        serializer = new ChecksumSerializer(queueCapacity);
+        serializer.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializer.shutdown();
+    }
+
+    @Benchmark
+    public Long service() throws Exception {
+        return serializer.service(payload).get();
+    }
+
+    static class ChecksumSerializer extends AbstractSerializer<byte[], Long> {
+
+        ChecksumSerializer(int queueCapacity) {
+            super(new ArrayBlockingQueue<Runnable>(queueCapacity), new TaskProcssor<byte[], Long>() {
+                @Override
+                public Long doProcess(byte[] task) throws Exception {
+                    return BenchmarkSupport.checksum(task, 0, task.length);
+                }
+            });
+        }
+
+        @Override
+        public byte[] makeTask(Object... params) {
+            return (byte[]) params[0];
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.TraceThreadPoolExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较TraceThreadPoolExecutor各TraceMode下每次提交的开销
+ * 线程池只有一个线程且使用SynchronousQueue，工作者线程繁忙时任务由提交线程执行（CallerRunsPolicy），
+ * 各模式之间的差异即为采集调用栈的开销；callDepth用于模拟较深的业务调用栈
+ * 运行方式：java -jar target/benchmarks.jar TraceExecutorBenchmark -prof gc
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceExecutorBenchmark {
+
+    @Param({"OFF", "FULL", "SAMPLED", "CALLER"})
+    public String traceMode;
+
+    @Param({"0", "64", "256"})
+    public int callDepth;
+
+    private TraceThreadPoolExecutor executor;
+
+    private final Runnable runnable = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final Callable<Long> callable = new Callable<Long>() {
+        @Override
+        public Long call() {
+            return 1L;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new TraceThreadPoolExecutor(1, 1, 60, TraceThreadPoolExecutor.TraceMode.valueOf(traceMode));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.shutdownQuietly(executor);
+    }
+
+    @Benchmark
+    public void execute() {
+        execute(callDepth);
+    }
+
+    @Benchmark
+    public Long submitAndGet() throws ExecutionException, InterruptedException {
+        return submitAndGet(callDepth);
+    }
+
+    private void execute(int depth) {
+        if(depth > 0){
+            execute(depth - 1);
+            return;
+        }
+        executor.execute(runnable);
+    }
+
+    private Long submitAndGet(int depth) throws ExecutionException, InterruptedException {
+        if(depth > 0){
+            return submitAndGet(depth - 1);
+        }
+        Future<Long> future = executor.submit(callable);
+        return future.get();
+    }
+}
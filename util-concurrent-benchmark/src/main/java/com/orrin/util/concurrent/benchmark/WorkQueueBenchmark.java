@@ -0,0 +1,149 @@
+package com.orrin.util.concurrent.benchmark;
+
+import com.orrin.util.concurrent.AbsractPipe;
+import com.orrin.util.concurrent.MappedFileBlockingQueue;
+import com.orrin.util.concurrent.PipeContext;
+import com.orrin.util.concurrent.PipeException;
+import com.orrin.util.concurrent.RecordSerializer;
+import com.orrin.util.concurrent.RingBufferBlockingQueue;
+import com.orrin.util.concurrent.WaitStrategy;
+import com.orrin.util.concurrent.WorkThreadPipeDecorator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较WorkThreadPipeDecorator在不同工作队列下的投递吞吐量
+ * MAPPED为MappedFileBlockingQueue（确认模式，只由页缓存负责落盘），MAPPED_SYNC每追加syncBatchSize个记录force一次；
+ * 两者的队列文件位于临时目录中，其吞吐量与所在的文件系统有关
+ * 运行方式：java -jar target/benchmarks.jar WorkQueueBenchmark -t 4
+ *
+ * @author orrin on 2026-10-17
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkQueueBenchmark {
+
+    @Param({"SYNCHRONOUS", "LINKED", "RING_BUSY_SPIN", "RING_YIELDING", "RING_PARKING", "MAPPED", "MAPPED_SYNC"})
+    public String queueType;
+
+    @Param({"1", "4"})
+    public int workerCount;
+
+    @Param({"1024"})
+    public int capacity;
+
+    //只用于MAPPED_SYNC
+    @Param({"64"})
+    public int syncBatchSize;
+
+    private static final RecordSerializer<Long> LONG_SERIALIZER = new RecordSerializer<Long>() {
+        @Override
+        public int serializedSize(Long record) {
+            return 8;
+        }
+
+        @Override
+        public void serialize(Long record, ByteBuffer buffer) {
+            buffer.putLong(record);
+        }
+
+        @Override
+        public Long deserialize(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    private WorkThreadPipeDecorator<Long, Long> pipe;
+    private MappedFileBlockingQueue<Long> mappedQueue;
+    private File queueDirectory;
+
+    private volatile long sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pipe = new WorkThreadPipeDecorator<Long, Long>(newQueue(), new AbsractPipe<Long, Long>() {
+            @Override
+            public Long doProcess(Long input) throws PipeException {
+                sink = input;
+                return null;
+            }
+        }, workerCount);
+
+        pipe.init(new PipeContext() {
+            @Override
+            public void handleError(PipeException exp) {
+                exp.printStackTrace();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pipe.shutdown(1, TimeUnit.SECONDS);
+        if(null != mappedQueue){
+            mappedQueue.close();
+            File[] files = queueDirectory.listFiles();
+            if(null != files){
+                for(File file : files){
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            Files.deleteIfExists(queueDirectory.toPath());
+        }
+    }
+
+    @Benchmark
+    public void process() throws InterruptedException {
+        pipe.process(System.nanoTime());
+    }
+
+    private BlockingQueue<Long> newQueue() throws IOException {
+        if("SYNCHRONOUS".equals(queueType)){
+            return new SynchronousQueue<Long>();
+        }
+        if("LINKED".equals(queueType)){
+            return new LinkedBlockingQueue<Long>(capacity);
+        }
+        if("RING_BUSY_SPIN".equals(queueType)){
+            return new RingBufferBlockingQueue<Long>(capacity, new WaitStrategy.BusySpin());
+        }
+        if("RING_YIELDING".equals(queueType)){
+            return new RingBufferBlockingQueue<Long>(capacity, new WaitStrategy.Yielding());
+        }
+        if("RING_PARKING".equals(queueType)){
+            return new RingBufferBlockingQueue<Long>(capacity, new WaitStrategy.ParkingBackoff());
+        }
+        if("MAPPED".equals(queueType) || "MAPPED_SYNC".equals(queueType)){
+            queueDirectory = Files.createTempDirectory("WorkQueueBenchmark").toFile();
+            mappedQueue = new MappedFileBlockingQueue<Long>(queueDirectory, LONG_SERIALIZER,
+                    MappedFileBlockingQueue.DEFAULT_SEGMENT_SIZE, capacity, false,
+                    "MAPPED_SYNC".equals(queueType) ? syncBatchSize : 0);
+            return mappedQueue;
+        }
+        throw new IllegalArgumentException("Unknown queue type: " + queueType);
+    }
+}
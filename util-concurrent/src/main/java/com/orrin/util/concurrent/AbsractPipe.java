@@ -1,5 +1,7 @@
 package com.orrin.util.concurrent;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -13,9 +15,10 @@ import java.util.concurrent.TimeUnit;
  * @param <OUT>
  *     输出类型
  */
-public abstract class AbsractPipe<IN, OUT> implements Pipe<IN, OUT> {
+public abstract class AbsractPipe<IN, OUT> implements Pipe<IN, OUT>, MeasurablePipe {
     protected volatile Pipe<?, ?> nextPipe = null;
     protected volatile PipeContext PipeCtx = null;
+    protected final PipeMetrics pipeMetrics = new PipeMetrics();
 
     @Override
     public void setNextPipe(Pipe<?, ?> nextPipe) {
@@ -26,7 +29,18 @@ public abstract class AbsractPipe<IN, OUT> implements Pipe<IN, OUT> {
     @Override
     public void process(IN input) throws InterruptedException {
         try {
-            OUT out = doProcess(input);
+            pipeMetrics.recordIn(1);
+            long start = System.nanoTime();
+            OUT out;
+            try {
+                out = doProcess(input);
+            } finally {
+                pipeMetrics.recordLatency(System.nanoTime() - start, 1);
+            }
+
+            if(null != out){
+                pipeMetrics.recordOut(1);
+            }
             if(null != nextPipe){
                 if(null != out){
                     ((Pipe<OUT, ?>) nextPipe).process(out);
@@ -35,11 +49,53 @@ public abstract class AbsractPipe<IN, OUT> implements Pipe<IN, OUT> {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (PipeException e) {
-            PipeCtx.handleError(e);
+            handleError(e);
         }
 
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        try {
+            pipeMetrics.recordIn(inputs.size());
+            long start = System.nanoTime();
+            List<OUT> outs;
+            try {
+                outs = doProcessBatch(inputs);
+            } finally {
+                pipeMetrics.recordLatency(System.nanoTime() - start, inputs.size());
+            }
+
+            if(null != outs){
+                pipeMetrics.recordOut(outs.size());
+            }
+            if(null != nextPipe){
+                if(null != outs && !outs.isEmpty()){
+                    ((Pipe<OUT, ?>) nextPipe).processBatch(outs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (PipeException e) {
+            handleError(e);
+        }
+    }
+
+    /**
+     * 将异常交给PipeContext处理，并计入该Pipe的错误数
+     * @param e
+     */
+    protected void handleError(PipeException e) {
+        pipeMetrics.recordError();
+        PipeCtx.handleError(e);
+    }
+
+    @Override
+    public PipeMetrics getPipeMetrics() {
+        return pipeMetrics;
+    }
+
     @Override
     public void init(PipeContext pipeCtx) {
         this.PipeCtx = pipeCtx;
@@ -54,4 +110,27 @@ public abstract class AbsractPipe<IN, OUT> implements Pipe<IN, OUT> {
      * 留给子类实现，用于子类实现其任务处理逻辑
      */
     public abstract OUT doProcess(IN input) throws PipeException;
+
+    /**
+     * 子类可覆盖该方法以实现真正的批量处理（如一次数据库批量写入）
+     * 默认逐个调用doProcess，单个元素抛出的异常交由PipeContext处理，不影响同一批次中的其他元素
+     * @param inputs
+     * @return 非null的处理结果，将作为一个批次交给下一个Pipe实例
+     * @throws PipeException
+     *          整个批次处理失败
+     */
+    public List<OUT> doProcessBatch(List<IN> inputs) throws PipeException {
+        List<OUT> outs = new ArrayList<OUT>(inputs.size());
+        for(IN input : inputs){
+            try {
+                OUT out = doProcess(input);
+                if(null != out){
+                    outs.add(out);
+                }
+            } catch (PipeException e) {
+                handleError(e);
+            }
+        }
+        return outs;
+    }
 }
\ No newline at end of file
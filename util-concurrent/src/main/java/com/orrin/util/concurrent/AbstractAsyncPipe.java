@@ -0,0 +1,287 @@
+package com.orrin.util.concurrent;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 异步非阻塞的Pipe实现类
+ * 子类通过doProcessAsync返回一个CompletionStage，处理结果在其完成时由完成它的线程交给下一个Pipe实例，
+ * 因此process方法不会等待处理结束，也不会因下游较慢而占住上游线程
+ * 同时处理中的元素个数不超过maxConcurrency，超出的元素在内部队列中排队（不阻塞提交线程），
+ * 有元素处理完成时再依次启动。处理失败的元素与AbsractPipe一样交由PipeContext处理
+ * 若下一个Pipe实例会阻塞（如使用SynchronousQueue的WorkThreadPipeDecorator），完成回调的线程也会被阻塞，
+ * 此时下一阶段宜同样使用异步Pipe或有界缓冲的工作队列
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ */
+public abstract class AbstractAsyncPipe<IN, OUT> extends AbsractPipe<IN, OUT> implements DrainablePipe {
+    private final int maxConcurrency;
+
+    private final Queue<IN> pendingInputs = new ConcurrentLinkedQueue<IN>();
+    private final LongAdder pendingCount = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    //保证同一时刻只有一个线程在启动新的异步处理，其他线程只需递增该计数即可让其多循环一次，避免回调中的递归
+    private final AtomicInteger dispatchWip = new AtomicInteger();
+    private final Object idleMonitor = new Object();
+
+    //排空时放弃的元素交给该handler，非null表示该阶段已被放弃
+    private volatile LeftoverHandler leftoverHandler;
+    private volatile String stageName;
+    private final LongAdder leftoverCount = new LongAdder();
+
+    public AbstractAsyncPipe(int maxConcurrency) {
+        super();
+        if(maxConcurrency <= 0){
+            throw new IllegalArgumentException("maxConcurrency should be positive!");
+        }
+        this.maxConcurrency = maxConcurrency;
+
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_QUEUE_DEPTH, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return pendingCount.sum();
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_IN_FLIGHT, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return inFlight.get();
+            }
+        });
+    }
+
+    /**
+     * 留给子类实现，以异步的方式处理输入元素
+     * @param input
+     * @return 处理结果，完成值为null表示没有输出
+     * @throws PipeException
+     */
+    protected abstract CompletionStage<OUT> doProcessAsync(IN input) throws PipeException;
+
+    /**
+     * 同步处理：等待doProcessAsync完成。仅在以同步方式调用该Pipe时使用
+     */
+    @Override
+    public OUT doProcess(IN input) throws PipeException {
+        CompletionStage<OUT> stage = doProcessAsync(input);
+        if(null == stage){
+            return null;
+        }
+        try {
+            return stage.toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipeException(this, input, "Interrupted while waiting for async task", e);
+        } catch (ExecutionException e) {
+            throw toPipeException(input, e.getCause());
+        }
+    }
+
+    @Override
+    public void process(IN input) throws InterruptedException {
+        if(null != leftoverHandler){
+            handOver(input);
+            return;
+        }
+        pipeMetrics.recordIn(1);
+        pendingCount.increment();
+        pendingInputs.offer(input);
+        dispatch();
+    }
+
+    @Override
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        if(null != leftoverHandler){
+            for(IN input : inputs){
+                handOver(input);
+            }
+            return;
+        }
+        pipeMetrics.recordIn(inputs.size());
+        for(IN input : inputs){
+            pendingCount.increment();
+            pendingInputs.offer(input);
+        }
+        dispatch();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return 正在异步处理中的元素个数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void dispatch() {
+        if(0 != dispatchWip.getAndIncrement()){
+            //已有线程在分派，由它多循环一次
+            return;
+        }
+
+        int missed = 1;
+        do {
+            while(inFlight.get() < maxConcurrency){
+                IN input = pendingInputs.poll();
+                if(null == input){
+                    break;
+                }
+                pendingCount.decrement();
+                inFlight.incrementAndGet();
+                start(input);
+            }
+            missed = dispatchWip.addAndGet(-missed);
+        } while(0 != missed);
+    }
+
+    private void start(final IN input) {
+        final long startNanos = System.nanoTime();
+        CompletionStage<OUT> stage;
+        try {
+            stage = doProcessAsync(input);
+        } catch (PipeException e) {
+            stage = failedStage(e);
+        } catch (RuntimeException e) {
+            stage = failedStage(e);
+        }
+        if(null == stage){
+            stage = CompletableFuture.completedFuture(null);
+        }
+
+        stage.whenComplete(new BiConsumer<OUT, Throwable>() {
+            @Override
+            public void accept(OUT out, Throwable throwable) {
+                try {
+                    complete(input, startNanos, out, throwable);
+                } finally {
+                    inFlight.decrementAndGet();
+                    dispatch();
+                    signalIfIdle();
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(IN input, long startNanos, OUT out, Throwable throwable) {
+        pipeMetrics.recordLatency(System.nanoTime() - startNanos, 1);
+        if(null != throwable){
+            handleError(toPipeException(input, throwable));
+            return;
+        }
+
+        if(null != out){
+            pipeMetrics.recordOut(1);
+            if(null != nextPipe){
+                try {
+                    ((Pipe<OUT, ?>) nextPipe).process(out);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private PipeException toPipeException(IN input, Throwable throwable) {
+        Throwable cause = throwable;
+        while(cause instanceof CompletionException && null != cause.getCause()){
+            cause = cause.getCause();
+        }
+        if(cause instanceof PipeException){
+            return (PipeException) cause;
+        }
+        return new PipeException(this, input, "Async task failed", cause);
+    }
+
+    private static <T> CompletionStage<T> failedStage(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    private void signalIfIdle() {
+        if(0 == inFlight.get() && pendingInputs.isEmpty()){
+            synchronized (idleMonitor){
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        synchronized (idleMonitor){
+            while(0 != inFlight.get() || !pendingInputs.isEmpty()){
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if(remainingMillis <= 0){
+                    return false;
+                }
+                idleMonitor.wait(Math.min(remainingMillis, 100));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在内部队列中排队的元素交给handler，正在异步处理中的元素不受影响
+     */
+    @Override
+    public void abandon(String stageName, LeftoverHandler handler) {
+        this.stageName = stageName;
+        this.leftoverHandler = handler;
+
+        IN input;
+        while(null != (input = pendingInputs.poll())){
+            pendingCount.decrement();
+            handOver(input);
+        }
+        signalIfIdle();
+    }
+
+    private void handOver(IN input) {
+        leftoverCount.increment();
+        try {
+            leftoverHandler.onLeftover(stageName, input);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getInFlightCount() {
+        return inFlight.get() + pendingCount.sum();
+    }
+
+    @Override
+    public long getLeftoverCount() {
+        return leftoverCount.sum();
+    }
+
+    /**
+     * 等待已提交的元素全部处理完毕，至多等待timeout
+     */
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        try {
+            awaitDrained(System.nanoTime() + unit.toNanos(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.orrin.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 基于ForkJoinPool的并行Pipe实现类
+ * 与AbstractParallePipe不同，该类构造的子任务可以递归拆分，拆分出的子任务由ForkJoinPool中的空闲线程窃取执行；
+ * 子任务的结果在任务树上逐级归约（accumulate/combine），无需等到所有子任务结束后再统一合并
+ * 若该Pipe本身运行在同一ForkJoinPool中（如以addAsThreadBasedPipe(pipe, forkJoinPool)的方式添加），
+ * 处理输入元素的线程会直接参与子任务的计算，而不是阻塞等待
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ * @param <V>
+ *     并行子任务的处理结果类型
+ */
+public abstract class AbstractForkJoinPipe<IN, OUT, V> extends AbsractPipe<IN, OUT> {
+    private final ForkJoinPool forkJoinPool;
+
+    public AbstractForkJoinPipe() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public AbstractForkJoinPipe(ForkJoinPool forkJoinPool) {
+        super();
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * 留给子类实现，用于根据指定的输入元素input构造一组可拆分的子任务
+     * @param input
+     * @return
+     * @throws Exception
+     */
+    protected abstract List<SplittableTask<V>> buildTasks(IN input) throws Exception;
+
+    /**
+     * 留给子类实现，返回归约的初始值
+     * @param input
+     * @return
+     */
+    protected abstract OUT identity(IN input);
+
+    /**
+     * 留给子类实现，将一个子任务的结果归约到部分结果中
+     * @param partial
+     * @param subTaskResult
+     * @return
+     */
+    protected abstract OUT accumulate(OUT partial, V subTaskResult);
+
+    /**
+     * 留给子类实现，合并两个部分结果
+     * @param left
+     * @param right
+     * @return
+     */
+    protected abstract OUT combine(OUT left, OUT right);
+
+    @Override
+    public OUT doProcess(IN input) throws PipeException {
+        OUT out = null;
+        try {
+            List<SplittableTask<V>> tasks = buildTasks(input);
+            if(null == tasks || tasks.isEmpty()){
+                return identity(input);
+            }
+            out = forkJoinPool.invoke(new TaskListReducer(input, tasks, 0, tasks.size()));
+        } catch (Exception e) {
+            Throwable cause = e;
+            while(cause instanceof SubTaskException && null != cause.getCause()){
+                cause = cause.getCause();
+            }
+            throw new PipeException(this, input, "Task failed", cause);
+        }
+        return out;
+    }
+
+    /**
+     * 对子任务列表[from, to)二分拆分并归约
+     */
+    private class TaskListReducer extends RecursiveTask<OUT> {
+        private static final long serialVersionUID = -6504624396254108335L;
+
+        private final IN input;
+        private final List<SplittableTask<V>> tasks;
+        private final int from;
+        private final int to;
+
+        TaskListReducer(IN input, List<SplittableTask<V>> tasks, int from, int to) {
+            this.input = input;
+            this.tasks = tasks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected OUT compute() {
+            if(to - from == 1){
+                return new SubTaskReducer(input, tasks.get(from)).compute();
+            }
+
+            int mid = (from + to) >>> 1;
+            TaskListReducer right = new TaskListReducer(input, tasks, mid, to);
+            right.fork();
+            OUT left = new TaskListReducer(input, tasks, from, mid).compute();
+            return combine(left, right.join());
+        }
+    }
+
+    /**
+     * 执行单个子任务：可拆分时拆分并行执行，否则直接计算
+     */
+    private class SubTaskReducer extends RecursiveTask<OUT> {
+        private static final long serialVersionUID = 2203406003519813066L;
+
+        private final IN input;
+        private final SplittableTask<V> task;
+
+        SubTaskReducer(IN input, SplittableTask<V> task) {
+            this.input = input;
+            this.task = task;
+        }
+
+        @Override
+        protected OUT compute() {
+            if(task.shouldSplit()){
+                List<SplittableTask<V>> children = task.split();
+                if(null != children && !children.isEmpty()){
+                    return new TaskListReducer(input, children, 0, children.size()).compute();
+                }
+            }
+
+            try {
+                return accumulate(identity(input), task.compute());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SubTaskException(e);
+            }
+        }
+    }
+
+    /**
+     * 用于将子任务抛出的受检异常带出ForkJoinTask
+     */
+    private static class SubTaskException extends RuntimeException {
+        private static final long serialVersionUID = -1316476453557286431L;
+
+        SubTaskException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
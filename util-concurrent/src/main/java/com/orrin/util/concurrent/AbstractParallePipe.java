@@ -1,15 +1,23 @@
 package com.orrin.util.concurrent;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 支持并行处理的Pipe实现类
  * 该类对每个输入元素生成一组子任务，并以并行的方式去执行这些子任务、
  * 各个子任务的执行结果会被合并为相应输入元素的输出结果
+ * 任一子任务失败时立即取消（中断）其余尚未完成的子任务，不再等待它们
+ * 指定timeout时每个输入元素都有一个处理期限，该期限通过buildTasks(IN, Deadline)传递给子任务；
+ * 期限已过时取消尚未完成的子任务，并以combinePartialResults合并已完成的子任务的结果（默认视为失败）
  * @author orrin on 2018-11-23
  *
  * @param <IN>
@@ -21,10 +29,24 @@ import java.util.concurrent.Future;
  */
 public abstract class AbstractParallePipe<IN, OUT, V> extends AbsractPipe<IN, OUT> {
     private final ExecutorService executorService;
+    //每个输入元素的处理期限（纳秒），0表示没有期限
+    private final long timeoutNanos;
 
     public AbstractParallePipe(BlockingQueue<IN> queue, ExecutorService executorService) {
+        this(queue, executorService, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeout
+     *          每个输入元素的处理期限，从开始构造子任务时算起，0表示没有期限
+     */
+    public AbstractParallePipe(BlockingQueue<IN> queue, ExecutorService executorService, long timeout, TimeUnit unit) {
         super();
+        if(timeout < 0){
+            throw new IllegalArgumentException("timeout should not be negative!");
+        }
         this.executorService = executorService;
+        this.timeoutNanos = unit.toNanos(timeout);
     }
 
     /**
@@ -35,6 +57,16 @@ public abstract class AbstractParallePipe<IN, OUT, V> extends AbsractPipe<IN, OU
      */
     protected abstract List<Callable<V>> buildTasks(IN input) throws Exception;
 
+    /**
+     * 根据指定的输入元素input构造一组子任务，子任务可据deadline及早放弃
+     * 默认调用buildTasks(IN)；需要感知期限的子类覆盖该方法，其buildTasks(IN)可实现为buildTasks(input, Deadline.NONE)
+     * @param deadline
+     *          该输入元素的处理期限，没有期限时为Deadline.NONE
+     */
+    protected List<Callable<V>> buildTasks(IN input, Deadline deadline) throws Exception {
+        return buildTasks(input);
+    }
+
     /**
      * 留给子类实现，对各个子任务的处理结果进行合并，形成相应输入元素的输出结果
      * @param subTaskResults
@@ -44,25 +76,101 @@ public abstract class AbstractParallePipe<IN, OUT, V> extends AbsractPipe<IN, OU
     protected abstract OUT combineResults(List<Future<V>> subTaskResults) throws Exception;
 
     /**
-     * 以并行的方式执行一组子任务
+     * 处理期限已过时调用，子类可覆盖该方法以已完成的子任务的结果构造降级的输出结果
+     * 默认抛出TimeoutException，即视为处理失败
+     * @param subTaskResults
+     *          与子任务一一对应，未能按期完成的子任务已被取消（isCancelled为true）
+     */
+    protected OUT combinePartialResults(List<Future<V>> subTaskResults) throws Exception {
+        int completed = 0;
+        for(Future<V> future : subTaskResults){
+            if(!future.isCancelled()){
+                completed++;
+            }
+        }
+        throw new TimeoutException(completed + " of " + subTaskResults.size() + " sub tasks completed before deadline");
+    }
+
+    /**
+     * 以并行的方式执行一组子任务，没有处理期限时由doProcess调用
+     * 默认即invokeParallel(tasks, Deadline.NONE)：任一子任务失败时取消其余子任务
      * @param tasks
      * @return
      * @throws Exception
      */
     protected List<Future<V>> invokeParallel(List<Callable<V>> tasks) throws Exception{
-        return executorService.invokeAll(tasks);
+        return invokeParallel(tasks, Deadline.NONE);
     }
 
+    /**
+     * 以并行的方式执行一组子任务，直到全部完成、任一失败或期限已过
+     * 任一子任务失败时取消其余子任务并抛出该子任务的ExecutionException；期限已过时取消尚未完成的子任务
+     * @return 与tasks一一对应的Future
+     * @throws ExecutionException
+     *          最先失败的子任务的异常
+     */
+    protected List<Future<V>> invokeParallel(List<Callable<V>> tasks, Deadline deadline)
+            throws InterruptedException, ExecutionException {
+        ExecutorCompletionService<V> completionService = new ExecutorCompletionService<V>(executorService);
+        List<Future<V>> futures = new ArrayList<Future<V>>(tasks.size());
+        try {
+            for(Callable<V> task : tasks){
+                futures.add(completionService.submit(task));
+            }
+
+            for(int remaining = futures.size(); remaining > 0; remaining--){
+                Future<V> future;
+                if(deadline.isBounded()){
+                    future = completionService.poll(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+                    if(null == future){
+                        //期限已过
+                        break;
+                    }
+                }else{
+                    future = completionService.take();
+                }
+                //子任务失败时抛出ExecutionException
+                future.get();
+            }
+        } finally {
+            //取消尚未完成的子任务：期限已过、有子任务失败或等待期间被中断
+            cancelAll(futures);
+        }
+        return futures;
+    }
+
+    private static <V> void cancelAll(List<Future<V>> futures) {
+        for(Future<V> future : futures){
+            if(!future.isDone()){
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <V> boolean allCompleted(List<Future<V>> futures) {
+        for(Future<V> future : futures){
+            if(future.isCancelled()){
+                return false;
+            }
+        }
+        return true;
+    }
 
     @Override
     public OUT doProcess(IN input) throws PipeException {
         OUT out = null;
         try {
-            out = combineResults(invokeParallel(buildTasks(input)));
+            Deadline deadline = timeoutNanos > 0 ? Deadline.after(timeoutNanos, TimeUnit.NANOSECONDS) : Deadline.NONE;
+            List<Callable<V>> tasks = buildTasks(input, deadline);
+            List<Future<V>> results = deadline.isBounded() ? invokeParallel(tasks, deadline) : invokeParallel(tasks);
+            out = allCompleted(results) ? combineResults(results) : combinePartialResults(results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PipeException(this, input, "Interrupted while waiting for sub tasks", e);
         } catch (Exception e) {
             throw new PipeException(this, input, "Task failed", e);
         }
         return out;
     }
 
-}
\ No newline at end of file
+}
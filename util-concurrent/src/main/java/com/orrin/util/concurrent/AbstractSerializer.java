@@ -2,9 +2,12 @@ package com.orrin.util.concurrent;
 
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 串行线程封闭（Serial Thread Confinement）模式Serializer参与者可复用实现
+ * 使用BatchTaskProcssor时为批量模式：WorkerThead将排队的任务合并为批次一次处理，
+ * 适用于批量访问远比逐个访问便宜的资源（如将多次追加合并为一次写入），各调用方的Future仍分别完成
  * @author orrin on 2018-11-23
  *
  * @param <T>
@@ -20,6 +23,19 @@ public abstract class AbstractSerializer<T, V> {
         this.workerThread = new TerminatableWorkerThread<>(workQueue, taskProcssor);
     }
 
+    /**
+     * 批量模式
+     * @param maxBatchSize
+     *          每批次最多处理的任务个数
+     * @param lingerTime
+     *          取到第一个任务后为凑满批次最多等待的时间，0表示只合并已在队列中的任务
+     */
+    public AbstractSerializer(BlockingQueue<Runnable> workQueue, BatchTaskProcssor<T, V> batchTaskProcssor,
+                              int maxBatchSize, long lingerTime, TimeUnit unit) {
+        super();
+        this.workerThread = new TerminatableWorkerThread<>(workQueue, batchTaskProcssor, maxBatchSize, lingerTime, unit);
+    }
+
     /**
      * 留给子类实现。用于根据指定参数生成相应的任务实例
      * @param params
@@ -49,7 +49,7 @@ public abstract class AbstractTerminatableThread extends Thread implements Termi
         try {
             while (true) {
                 //在执行线程的处理逻辑前先判断线程停止的标志
-                if (terminationToken.isToShutDown() && terminationToken.reservations.get() <= 0) {
+                if (terminationToken.isToShutDown() && terminationToken.isDrained()) {
                     break;
                 }
                 doRun();
@@ -78,7 +78,7 @@ public abstract class AbstractTerminatableThread extends Thread implements Termi
             doTerminate();
         } finally {
             //若无待处理的任务，则试图强制终止线程
-            if (terminationToken.reservations.get() <= 0) {
+            if (terminationToken.isDrained()) {
                 super.interrupt();
             }
         }
@@ -0,0 +1,20 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 需要确认的队列：出队的元素只有在被确认之后才算消费完成
+ * WorkThreadPipeDecorator的工作队列实现该接口时，工作者线程在元素处理完成（或交给LeftoverHandler）之后确认该元素
+ * @author orrin on 2026-10-17
+ *
+ * @param <E>
+ *     元素类型
+ */
+public interface AcknowledgingQueue<E> extends BlockingQueue<E> {
+    /**
+     * 确认一个已出队的元素已消费完成
+     * @param item
+     *          出队时得到的元素实例
+     */
+    public void acknowledge(E item);
+}
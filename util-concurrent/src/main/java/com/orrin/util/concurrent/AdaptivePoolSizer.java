@@ -0,0 +1,220 @@
+package com.orrin.util.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 依据吞吐量、排队时长与CPU使用率在[minWorkers, maxWorkers]之间自动调整ResizablePool的工作者线程个数
+ * 每个控制周期：
+ * 由完成任务数的增量得到吞吐量X，按Little定律估算排队时长W=队列长度/X；
+ * 进程CPU使用率超过maxCpuUtilization时减少1个线程；
+ * 否则W超过targetQueueLatency或出现饱和（提交方等待、任务被拒绝）即视为积压，积压时爬山式地增加线程：
+ * 若上一周期刚增加过线程而吞吐量提升不足minThroughputGain，说明已越过拐点（如受限于下游或锁竞争），
+ * 则撤销上一步并在cooldownSteps个周期内不再增加；
+ * 没有积压且连续数个周期存在空闲线程时减少1个线程
+ * 每个实例仅控制一个ResizablePool
+ *
+ * @author orrin on 2026-10-17
+ */
+public class AdaptivePoolSizer {
+    //连续空闲该周期数后才减少线程，避免在临界负载下来回抖动
+    private static final int SHRINK_AFTER_IDLE_STEPS = 3;
+
+    private final ResizablePool pool;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+
+    private volatile long targetQueueLatencyNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private volatile double maxCpuUtilization = 0.9;
+    private volatile double minThroughputGain = 0.05;
+    private volatile int cooldownSteps = 5;
+
+    //上一控制周期的采样
+    private long lastNanos;
+    private long lastCompleted;
+    private long lastSaturation;
+    private double lastThroughput;
+    private int lastStep;
+    private int cooldown;
+    private int idleSteps;
+
+    private AbstractTerminatableThread controller;
+
+    public AdaptivePoolSizer(ResizablePool pool, int minWorkers, int maxWorkers) {
+        if(minWorkers <= 0 || maxWorkers < minWorkers){
+            throw new IllegalArgumentException("require 0 < minWorkers <= maxWorkers!");
+        }
+        this.pool = pool;
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+    }
+
+    /**
+     * 以固定的周期在后台（守护线程）执行adjust
+     */
+    public synchronized void start(final long interval, final TimeUnit unit) {
+        if(null != controller){
+            throw new IllegalStateException("AdaptivePoolSizer already started!");
+        }
+        controller = new AbstractTerminatableThread() {
+            @Override
+            protected void doRun() throws Exception {
+                unit.sleep(interval);
+                adjust();
+            }
+        };
+        controller.setName("AdaptivePoolSizer");
+        controller.setDaemon(true);
+        controller.start();
+    }
+
+    public void stop() {
+        AbstractTerminatableThread thread;
+        synchronized (this){
+            thread = controller;
+            controller = null;
+        }
+        if(null != thread){
+            thread.terminate(true);
+        }
+    }
+
+    /**
+     * 执行一个控制周期：采样并按需调整工作者线程个数
+     * @return 调整后的工作者线程个数
+     */
+    public synchronized int adjust() {
+        final long now = System.nanoTime();
+        final long completed = pool.getCompletedTaskCount();
+        final long saturation = pool.getSaturationCount();
+        final int size = pool.getWorkerCount();
+        if(0 == lastNanos){
+            //首次采样只作为基准
+            record(now, completed, saturation, 0, 0);
+            return size;
+        }
+
+        double seconds = (now - lastNanos) / 1e9;
+        double throughput = seconds > 0 ? Math.max(0, completed - lastCompleted) / seconds : 0;
+        //计数器可能被重置（如resetTelemetry），此时增量按0计
+        long saturated = Math.max(0, saturation - lastSaturation);
+        int queued = pool.getQueueSize();
+        //Little定律：排队时长 = 排队任务数 / 吞吐量
+        double queueLatencyNanos;
+        if(0 == queued){
+            queueLatencyNanos = 0;
+        }else{
+            queueLatencyNanos = throughput > 0 ? queued * 1e9 / throughput : Double.MAX_VALUE;
+        }
+        boolean backlog = saturated > 0 || queueLatencyNanos > targetQueueLatencyNanos;
+
+        int target = size;
+        if(cpuLoad() > maxCpuUtilization){
+            target = size - 1;
+            idleSteps = 0;
+        }else if(backlog){
+            idleSteps = 0;
+            if(lastStep > 0 && throughput < lastThroughput * (1 + minThroughputGain)){
+                //上一步增加的线程没有带来足够的吞吐量提升
+                target = size - lastStep;
+                cooldown = cooldownSteps;
+            }else if(cooldown > 0){
+                cooldown--;
+            }else{
+                target = size + (queueLatencyNanos > 4.0 * targetQueueLatencyNanos ? Math.max(1, size / 4) : 1);
+            }
+        }else{
+            if(cooldown > 0){
+                cooldown--;
+            }
+            if(pool.getActiveWorkerCount() < size && ++idleSteps >= SHRINK_AFTER_IDLE_STEPS){
+                target = size - 1;
+                idleSteps = 0;
+            }
+        }
+
+        target = Math.max(minWorkers, Math.min(maxWorkers, target));
+        if(target != size){
+            pool.setWorkerCount(target);
+        }
+        record(now, completed, saturation, throughput, target - size);
+        return target;
+    }
+
+    private void record(long now, long completed, long saturation, double throughput, int step) {
+        lastNanos = now;
+        lastCompleted = completed;
+        lastSaturation = saturation;
+        lastThroughput = throughput;
+        lastStep = step;
+    }
+
+    /**
+     * @return 进程的CPU使用率（0~1），无法获取时返回0
+     */
+    private double cpuLoad() {
+        if(maxCpuUtilization >= 1 || !(osBean instanceof com.sun.management.OperatingSystemMXBean)){
+            return 0;
+        }
+        double load = ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuLoad();
+        return load < 0 ? 0 : load;
+    }
+
+    public int getMinWorkers() {
+        return minWorkers;
+    }
+
+    public int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    public long getTargetQueueLatency(TimeUnit unit) {
+        return unit.convert(targetQueueLatencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setTargetQueueLatency(long latency, TimeUnit unit) {
+        if(latency <= 0){
+            throw new IllegalArgumentException("latency should be positive!");
+        }
+        this.targetQueueLatencyNanos = unit.toNanos(latency);
+    }
+
+    public double getMaxCpuUtilization() {
+        return maxCpuUtilization;
+    }
+
+    /**
+     * @param maxCpuUtilization
+     *          进程CPU使用率上限（0~1），不小于1表示不考虑CPU使用率
+     */
+    public void setMaxCpuUtilization(double maxCpuUtilization) {
+        if(maxCpuUtilization <= 0){
+            throw new IllegalArgumentException("maxCpuUtilization should be positive!");
+        }
+        this.maxCpuUtilization = maxCpuUtilization;
+    }
+
+    public double getMinThroughputGain() {
+        return minThroughputGain;
+    }
+
+    public void setMinThroughputGain(double minThroughputGain) {
+        if(minThroughputGain < 0){
+            throw new IllegalArgumentException("minThroughputGain should not be negative!");
+        }
+        this.minThroughputGain = minThroughputGain;
+    }
+
+    public int getCooldownSteps() {
+        return cooldownSteps;
+    }
+
+    public void setCooldownSteps(int cooldownSteps) {
+        if(cooldownSteps < 0){
+            throw new IllegalArgumentException("cooldownSteps should not be negative!");
+        }
+        this.cooldownSteps = cooldownSteps;
+    }
+}
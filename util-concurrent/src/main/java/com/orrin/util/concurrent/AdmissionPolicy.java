@@ -0,0 +1,20 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 处理阶段在途元素达到上限（没有可用的许可）时，对新输入元素的处理策略
+ * @author orrin on 2026-10-17
+ */
+public enum AdmissionPolicy {
+    /**
+     * 阻塞上游线程，直到有可用的许可
+     */
+    BLOCK,
+    /**
+     * 阻塞上游线程至多指定的时间，超时后拒绝该元素
+     */
+    TIMEOUT,
+    /**
+     * 不等待，直接拒绝该元素
+     */
+    SHED
+}
@@ -0,0 +1,23 @@
+package com.orrin.util.concurrent;
+
+import java.util.List;
+
+/**
+ * 可批量处理任务的TaskProcssor，供批量模式的AbstractSerializer一次处理多个任务
+ * @author orrin on 2026-10-17
+ *
+ * @param <T>
+ *      任务的类型
+ * @param <V>
+ *      任务处理结果的类型
+ */
+public interface BatchTaskProcssor<T, V> extends TaskProcssor<T, V> {
+    /**
+     * 批量处理任务
+     * @param tasks
+     *          按提交顺序排列的任务
+     * @return 与tasks一一对应的处理结果。抛出异常时该批次中的所有任务均以该异常失败
+     * @throws Exception
+     */
+    public List<V> doProcessBatch(List<T> tasks) throws Exception;
+}
@@ -0,0 +1,85 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按错误率熔断：在一个统计窗口内，某处理阶段的错误数不少于minimumErrors且错误数与输入元素个数之比不低于failureRateThreshold时，
+ * 熔断器打开openDuration，打开期间该阶段出错的元素不再重试而直接进入死信队列；到期后自动关闭并重新开始统计
+ * 输入元素个数取自该阶段的PipeMetrics，未实现MeasurablePipe的阶段只按错误数判断
+ * 每个实例只用于一个处理阶段
+ * @author orrin on 2026-10-17
+ */
+public class CircuitBreaker {
+    private final double failureRateThreshold;
+    private final int minimumErrors;
+    private final long windowNanos;
+    private final long openNanos;
+
+    private long windowStart;
+    private long windowItemsIn;
+    private long windowErrors;
+    //为0时表示熔断器关闭
+    private long openUntil = 0;
+    private long openCount = 0;
+
+    public CircuitBreaker(double failureRateThreshold, int minimumErrors, long window, long openDuration, TimeUnit unit) {
+        if(failureRateThreshold <= 0 || failureRateThreshold > 1 || minimumErrors <= 0 || window <= 0 || openDuration <= 0){
+            throw new IllegalArgumentException("require 0 < failureRateThreshold <= 1 and positive minimumErrors, window, openDuration!");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumErrors = minimumErrors;
+        this.windowNanos = unit.toNanos(window);
+        this.openNanos = unit.toNanos(openDuration);
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * 记录一次错误
+     * @param itemsIn
+     *          该阶段累计的输入元素个数，未知时为-1
+     * @return 熔断器是否处于关闭状态（即出错的元素是否可以重试）
+     */
+    public synchronized boolean recordError(long itemsIn) {
+        final long now = System.nanoTime();
+        if(0 != openUntil){
+            if(now - openUntil < 0){
+                return false;
+            }
+            //打开期已过，关闭并重新开始统计
+            openUntil = 0;
+            resetWindow(now, itemsIn);
+        }
+        if(now - windowStart >= windowNanos){
+            resetWindow(now, itemsIn);
+        }
+
+        windowErrors++;
+        long processed = itemsIn < 0 ? windowErrors : Math.max(1, itemsIn - windowItemsIn);
+        if(windowErrors >= minimumErrors && windowErrors >= failureRateThreshold * processed){
+            openUntil = now + openNanos;
+            if(0 == openUntil){
+                openUntil = 1;
+            }
+            openCount++;
+            return false;
+        }
+        return true;
+    }
+
+    private void resetWindow(long now, long itemsIn) {
+        windowStart = now;
+        windowItemsIn = itemsIn;
+        windowErrors = 0;
+    }
+
+    public synchronized boolean isOpen() {
+        return 0 != openUntil && System.nanoTime() - openUntil < 0;
+    }
+
+    /**
+     * @return 熔断器打开的累计次数
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+}
@@ -0,0 +1,71 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 可重复使用的任务结果凭据，替代每次提交都新建的Future
+ * 同一时刻只能对应一个未完成的任务：提交任务后调用await等待结果，await返回（或抛出ExecutionException）后
+ * 即可用于下一次提交。通常每个提交线程持有一个实例（如放在ThreadLocal中）
+ * 处理成功时不产生任何对象分配
+ * @author orrin on 2026-10-17
+ *
+ * @param <V>
+ *      任务处理结果的类型
+ */
+public class CompletionHandle<V> implements TaskCompletion<V> {
+    private volatile boolean done;
+    private volatile Thread waiter;
+    //由done的写入与读取保证可见性
+    private V result;
+    private Throwable failure;
+
+    @Override
+    public void onComplete(V result, Throwable failure) {
+        this.result = result;
+        this.failure = failure;
+        this.done = true;
+        Thread w = waiter;
+        if(null != w){
+            LockSupport.unpark(w);
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 等待任务处理结束并取得结果，之后该实例可再次使用
+     * @return 处理结果
+     * @throws InterruptedException
+     *          等待期间被中断，此时任务仍未完成，该实例在任务完成之前不能再次使用
+     * @throws ExecutionException
+     *          任务处理失败
+     */
+    public V await() throws InterruptedException, ExecutionException {
+        if(!done){
+            waiter = Thread.currentThread();
+            try {
+                while(!done){
+                    LockSupport.park(this);
+                    if(Thread.interrupted()){
+                        throw new InterruptedException();
+                    }
+                }
+            } finally {
+                waiter = null;
+            }
+        }
+
+        V r = result;
+        Throwable f = failure;
+        result = null;
+        failure = null;
+        done = false;
+        if(null != f){
+            throw new ExecutionException(f);
+        }
+        return r;
+    }
+}
@@ -0,0 +1,58 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 死信：重试耗尽（或未重试）的出错元素
+ *
+ * @author orrin on 2026-10-17
+ */
+public class DeadLetter {
+    private final PipeException cause;
+    private final int retries;
+    private final long timestamp;
+
+    public DeadLetter(PipeException cause, int retries, long timestamp) {
+        this.cause = cause;
+        this.retries = retries;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return 抛出异常的Pipe实例
+     */
+    public Pipe<?, ?> getSourcePipe() {
+        return cause.sourcePipe;
+    }
+
+    /**
+     * @return 出错的输入元素
+     */
+    public Object getInput() {
+        return cause.input;
+    }
+
+    /**
+     * @return 最后一次处理时抛出的异常
+     */
+    public PipeException getCause() {
+        return cause;
+    }
+
+    /**
+     * @return 进入死信队列之前已重试的次数
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return 进入死信队列的时间（System.currentTimeMillis）
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "DeadLetter{input=" + cause.input + ", retries=" + retries + ", cause=" + cause + "}";
+    }
+}
@@ -0,0 +1,61 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以System.nanoTime表示的截止时间，用于将一个输入元素的处理期限传递给其子任务
+ * 子任务可通过isExpired或timeRemaining自行检查，及早放弃已无意义的计算
+ *
+ * @author orrin on 2026-10-17
+ */
+public final class Deadline {
+    /**
+     * 没有期限
+     */
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+
+    private Deadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), true);
+    }
+
+    /**
+     * @return 是否有期限
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * @return 以System.nanoTime表示的截止时间，没有期限时无意义
+     */
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * @return 剩余的时间，已过期时为0，没有期限时为Long.MAX_VALUE
+     */
+    public long timeRemaining(TimeUnit unit) {
+        if(!bounded){
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline{remainingNanos=" + (deadlineNanos - System.nanoTime()) + "}" : "Deadline{none}";
+    }
+}
@@ -0,0 +1,60 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 单个处理阶段排空（drain）的结果
+ *
+ * @author orrin on 2026-10-17
+ */
+public class DrainReport {
+    private final String stageName;
+    private final boolean drained;
+    private final long leftover;
+    private final long inFlight;
+    private final long waitedMillis;
+
+    public DrainReport(String stageName, boolean drained, long leftover, long inFlight, long waitedMillis) {
+        this.stageName = stageName;
+        this.drained = drained;
+        this.leftover = leftover;
+        this.inFlight = inFlight;
+        this.waitedMillis = waitedMillis;
+    }
+
+    public String getStageName() {
+        return stageName;
+    }
+
+    /**
+     * @return 期限之前该阶段已接收的元素是否已全部处理完毕
+     */
+    public boolean isDrained() {
+        return drained;
+    }
+
+    /**
+     * @return 交给LeftoverHandler的元素个数，包括开始排空后才到达该阶段的元素
+     */
+    public long getLeftover() {
+        return leftover;
+    }
+
+    /**
+     * @return 放弃该阶段时仍在处理中的元素个数，这些元素可能因线程被中断而未处理完
+     */
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return 等待该阶段排空所用的时间
+     */
+    public long getWaitedMillis() {
+        return waitedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return stageName + "{drained=" + drained + ", leftover=" + leftover + ", inFlight=" + inFlight
+                + ", waitedMillis=" + waitedMillis + "}";
+    }
+}
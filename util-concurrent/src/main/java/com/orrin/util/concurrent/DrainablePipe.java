@@ -0,0 +1,35 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 可排空（drain）的处理阶段，供SimplePipeline.drainAndShutdown在一个总的期限内逐个阶段排空
+ * @author orrin on 2026-10-17
+ */
+public interface DrainablePipe {
+    /**
+     * 等待已接收的元素全部处理完毕
+     * @param deadlineNanos
+     *          以System.nanoTime()为基准的期限
+     * @return 期限之前是否已全部处理完毕
+     * @throws InterruptedException
+     */
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException;
+
+    /**
+     * 放弃尚未开始处理的元素：将其交给handler，此后到达该阶段的元素也不再处理而是直接交给handler
+     * 正在处理中的元素不受影响
+     * @param stageName
+     *          该阶段的名称，原样传给handler
+     * @param handler
+     */
+    public void abandon(String stageName, LeftoverHandler handler);
+
+    /**
+     * @return 已接收但尚未处理结束、也未交给LeftoverHandler的元素个数
+     */
+    public long getInFlightCount();
+
+    /**
+     * @return 已交给LeftoverHandler的元素个数
+     */
+    public long getLeftoverCount();
+}
@@ -0,0 +1,14 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 通过JMX发布线程池的运行状况
+ * @author orrin on 2026-10-17
+ */
+public interface ExecutorTelemetryMXBean {
+    public ExecutorTelemetrySnapshot getTelemetry();
+
+    /**
+     * 重新开始统计耗时分布、拒绝次数与同时执行的任务数的最大值
+     */
+    public void resetTelemetry();
+}
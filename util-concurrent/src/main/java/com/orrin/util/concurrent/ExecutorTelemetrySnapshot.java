@@ -0,0 +1,100 @@
+package com.orrin.util.concurrent;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 线程池运行状况的只读快照
+ * 属性均以getter的形式提供，可直接通过MXBean发布
+ *
+ * @author orrin on 2026-10-17
+ */
+public class ExecutorTelemetrySnapshot {
+    private final int poolSize;
+    private final int corePoolSize;
+    private final int maximumPoolSize;
+    private final int largestPoolSize;
+    private final int activeCount;
+    //自上次重置以来同时执行的任务数的最大值（包括由提交线程执行的任务）
+    private final int peakActiveCount;
+    private final int queueSize;
+    private final long completedTaskCount;
+    //被拒绝的任务个数，包括由CallerRunsPolicy交给提交线程执行的任务
+    private final long rejectedCount;
+    private final long callerRunsCount;
+    private final List<TaskTimingSnapshot> taskTimings;
+
+    @ConstructorProperties({"poolSize", "corePoolSize", "maximumPoolSize", "largestPoolSize", "activeCount",
+            "peakActiveCount", "queueSize", "completedTaskCount", "rejectedCount", "callerRunsCount", "taskTimings"})
+    public ExecutorTelemetrySnapshot(int poolSize, int corePoolSize, int maximumPoolSize, int largestPoolSize,
+                                     int activeCount, int peakActiveCount, int queueSize, long completedTaskCount,
+                                     long rejectedCount, long callerRunsCount, List<TaskTimingSnapshot> taskTimings) {
+        this.poolSize = poolSize;
+        this.corePoolSize = corePoolSize;
+        this.maximumPoolSize = maximumPoolSize;
+        this.largestPoolSize = largestPoolSize;
+        this.activeCount = activeCount;
+        this.peakActiveCount = peakActiveCount;
+        this.queueSize = queueSize;
+        this.completedTaskCount = completedTaskCount;
+        this.rejectedCount = rejectedCount;
+        this.callerRunsCount = callerRunsCount;
+        this.taskTimings = Collections.unmodifiableList(taskTimings);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public int getLargestPoolSize() {
+        return largestPoolSize;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getPeakActiveCount() {
+        return peakActiveCount;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getCallerRunsCount() {
+        return callerRunsCount;
+    }
+
+    /**
+     * @return 按任务类型统计的排队与执行耗时
+     */
+    public List<TaskTimingSnapshot> getTaskTimings() {
+        return taskTimings;
+    }
+
+    @Override
+    public String toString() {
+        return "pool=" + poolSize + "/" + corePoolSize + "/" + maximumPoolSize + ", largest=" + largestPoolSize
+                + ", active=" + activeCount + ", peakActive=" + peakActiveCount + ", queue=" + queueSize
+                + ", completed=" + completedTaskCount + ", rejected=" + rejectedCount
+                + ", callerRuns=" + callerRunsCount + ", taskTimings=" + taskTimings;
+    }
+}
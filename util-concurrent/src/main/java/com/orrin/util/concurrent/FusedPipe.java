@@ -0,0 +1,121 @@
+package com.orrin.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由若干相邻处理阶段融合而成的Pipe：在同一线程中依次调用各阶段的doProcess，
+ * 阶段之间不经过队列，也没有线程交接；某一阶段没有输出时后续阶段不再执行
+ * 各阶段的运行指标仍分别记录在其自身的PipeMetrics中
+ * 各阶段的nextPipe依次指向其后的阶段，最后一个阶段指向FusedPipe的nextPipe，
+ * 因此单独调用某一阶段的process（如ResilientPipeContext的重试）时，其输出仍会经过后续阶段
+ * 由SimplePipeline在init时依据StageCost生成
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ */
+public class FusedPipe<IN, OUT> extends AbsractPipe<IN, OUT> {
+    private final List<AbsractPipe<Object, Object>> stages;
+
+    @SuppressWarnings("unchecked")
+    public FusedPipe(List<? extends AbsractPipe<?, ?>> stages) {
+        super();
+        if(stages.isEmpty()){
+            throw new IllegalArgumentException("stages should not be empty!");
+        }
+        List<AbsractPipe<Object, Object>> list = new ArrayList<AbsractPipe<Object, Object>>(stages.size());
+        for(AbsractPipe<?, ?> stage : stages){
+            list.add((AbsractPipe<Object, Object>) stage);
+        }
+        this.stages = list;
+        for(int i=1; i<list.size(); i++){
+            list.get(i - 1).setNextPipe(list.get(i));
+        }
+    }
+
+    @Override
+    public void setNextPipe(Pipe<?, ?> nextPipe) {
+        super.setNextPipe(nextPipe);
+        stages.get(stages.size() - 1).setNextPipe(nextPipe);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public OUT doProcess(IN input) throws PipeException {
+        Object current = input;
+        for(AbsractPipe<Object, Object> stage : stages){
+            PipeMetrics metrics = stage.getPipeMetrics();
+            metrics.recordIn(1);
+            long start = System.nanoTime();
+            try {
+                current = stage.doProcess(current);
+            } catch (PipeException e) {
+                metrics.recordError();
+                throw e;
+            } finally {
+                metrics.recordLatency(System.nanoTime() - start, 1);
+            }
+            if(null == current){
+                return null;
+            }
+            metrics.recordOut(1);
+        }
+        return (OUT) current;
+    }
+
+    /**
+     * 整个批次依次交给各阶段的doProcessBatch，保留各阶段自身的批量处理逻辑
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<OUT> doProcessBatch(List<IN> inputs) throws PipeException {
+        List<Object> current = (List<Object>) inputs;
+        for(AbsractPipe<Object, Object> stage : stages){
+            PipeMetrics metrics = stage.getPipeMetrics();
+            final int size = current.size();
+            metrics.recordIn(size);
+            long start = System.nanoTime();
+            try {
+                current = stage.doProcessBatch(current);
+            } catch (PipeException e) {
+                metrics.recordError();
+                throw e;
+            } finally {
+                metrics.recordLatency(System.nanoTime() - start, size);
+            }
+            if(null == current || current.isEmpty()){
+                return new ArrayList<OUT>(0);
+            }
+            metrics.recordOut(current.size());
+        }
+        return (List<OUT>) current;
+    }
+
+    /**
+     * @return 被融合的各个阶段，顺序与执行顺序一致
+     */
+    public List<AbsractPipe<?, ?>> getStages() {
+        return Collections.<AbsractPipe<?, ?>>unmodifiableList(stages);
+    }
+
+    @Override
+    public void init(PipeContext pipeCtx) {
+        super.init(pipeCtx);
+        for(AbsractPipe<Object, Object> stage : stages){
+            stage.init(pipeCtx);
+        }
+    }
+
+    /**
+     * 各阶段由其所属的逻辑处理阶段负责停止，这里什么也不做
+     */
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        //什么也不做
+    }
+}
@@ -0,0 +1,444 @@
+package com.orrin.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * 以有向无环图组织各处理阶段的流水线
+ * 每个节点拥有各自的有界输入队列与concurrency个工作者线程（即一个WorkThreadPipeDecorator），
+ * 因此相互独立的分支并行处理，而不是被串成一条链；入边经由目标节点的输入队列传递元素，
+ * 队列已满时上游节点等待，从而把背压沿图传递回入口
+ * 节点的输出按出边依次判断：BROADCAST模式下交给所有条件成立的出边（扇出），
+ * FIRST_MATCH模式下只交给第一条条件成立的出边（条件路由，最后一条无条件的出边相当于else）；
+ * 没有出边的节点的输出交给该流水线的下一个Pipe实例
+ * 有多条入边的普通节点直接合并各上游的输出（扇入）；汇合节点（addJoin）则按关联键等待每条入边各一个输出，
+ * 再由JoinCombiner合并为一个输出
+ * 扇出时同一个对象会被多个分支同时处理，分支不应修改它
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ */
+public class GraphPipeline<IN> implements PipeLine<IN, Object> {
+
+    public enum RoutingMode {
+        BROADCAST, FIRST_MATCH
+    }
+
+    //节点的输出因条件均不成立而被丢弃的个数
+    public static final String GAUGE_UNROUTED = "unrouted";
+    //汇合节点中尚未等齐的键的个数
+    public static final String GAUGE_PENDING_JOINS = "pendingJoins";
+
+    private static final int DEFAULT_EDGE_CAPACITY = 1024;
+    private static final int DEFAULT_MAX_PENDING_JOINS = 10000;
+
+    private final int edgeCapacity;
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+    private volatile Node entry;
+    private volatile Pipe<?, ?> nextPipe;
+    //addPipe按链式追加时的上一个节点
+    private Node lastAdded;
+
+    public GraphPipeline() {
+        this(DEFAULT_EDGE_CAPACITY);
+    }
+
+    /**
+     * @param edgeCapacity
+     *          每个节点输入队列的容量
+     */
+    public GraphPipeline(int edgeCapacity) {
+        if(edgeCapacity <= 0){
+            throw new IllegalArgumentException("edgeCapacity should be positive!");
+        }
+        this.edgeCapacity = edgeCapacity;
+    }
+
+    /**
+     * 添加一个节点
+     * @param name
+     *          节点名称，在图中唯一
+     * @param pipe
+     *          节点的处理逻辑
+     * @param concurrency
+     *          该节点的工作者线程个数
+     */
+    @SuppressWarnings("unchecked")
+    public <I, O> void addStage(String name, Pipe<I, O> pipe, int concurrency) {
+        addNode(new Node(name, (Pipe<Object, Object>) pipe, concurrency, false));
+    }
+
+    /**
+     * 添加一个汇合节点
+     * @param keyExtractor
+     *          从各上游的输出中提取关联键
+     * @param combiner
+     *          合并同一个键在各条入边上的输出
+     * @param maxPendingJoins
+     *          最多同时等待的键的个数，超出时最早的键被丢弃，
+     *          其已收到的各上游输出（上游节点名称 -> 输出）以NonRetryablePipeException交由PipeContext处理
+     */
+    public <K, O> void addJoin(String name, KeyExtractor<Object, K> keyExtractor, JoinCombiner<K, O> combiner,
+                               int concurrency, int maxPendingJoins) {
+        if(maxPendingJoins <= 0){
+            throw new IllegalArgumentException("maxPendingJoins should be positive!");
+        }
+        addNode(new Node(name, new JoinPipe<K, O>(name, keyExtractor, combiner, maxPendingJoins), concurrency, true));
+    }
+
+    public <K, O> void addJoin(String name, KeyExtractor<Object, K> keyExtractor, JoinCombiner<K, O> combiner,
+                               int concurrency) {
+        addJoin(name, keyExtractor, combiner, concurrency, DEFAULT_MAX_PENDING_JOINS);
+    }
+
+    private synchronized void addNode(Node node) {
+        if(nodes.containsKey(node.name)){
+            throw new IllegalArgumentException("Duplicate node: " + node.name);
+        }
+        nodes.put(node.name, node);
+        //汇合节点只接受带标记的上游输出，不能作为入口
+        if(null == entry && !node.join){
+            entry = node;
+        }
+    }
+
+    /**
+     * 添加一条无条件的边
+     */
+    public void connect(String from, String to) {
+        connect(from, to, null);
+    }
+
+    /**
+     * 添加一条有条件的边，from节点的输出满足predicate时才交给to节点
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> void connect(String from, String to, Predicate<? super T> predicate) {
+        Node source = nodeOf(from);
+        Node target = nodeOf(to);
+        source.edges.add(new Edge(target, (Predicate<Object>) predicate));
+        target.upstreams.add(source.name);
+    }
+
+    public synchronized void setRoutingMode(String name, RoutingMode routingMode) {
+        nodeOf(name).routingMode = routingMode;
+    }
+
+    /**
+     * 指定入口节点，默认为第一个添加的非汇合节点
+     * @throws IllegalArgumentException
+     *          name为汇合节点
+     */
+    public synchronized void setEntry(String name) {
+        Node node = nodeOf(name);
+        if(node.join){
+            throw new IllegalArgumentException("Join node can not be the entry: " + name);
+        }
+        entry = node;
+    }
+
+    /**
+     * 以单线程节点的形式追加到上一个通过addPipe追加的节点之后，使该类可以像SimplePipeline一样按链式使用
+     */
+    @Override
+    public synchronized void addPipe(Pipe<?, ?> pipe) {
+        String name = "stage-" + nodes.size();
+        addStage(name, pipe, 1);
+        if(null != lastAdded){
+            connect(lastAdded.name, name);
+        }
+        lastAdded = nodes.get(name);
+    }
+
+    private Node nodeOf(String name) {
+        Node node = nodes.get(name);
+        if(null == node){
+            throw new IllegalArgumentException("No such node: " + name);
+        }
+        return node;
+    }
+
+    @Override
+    public void setNextPipe(Pipe<?, ?> nextPipe) {
+        this.nextPipe = nextPipe;
+    }
+
+    @Override
+    public void process(IN input) throws InterruptedException {
+        entry.worker.process(input);
+    }
+
+    @Override
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        @SuppressWarnings("unchecked")
+        List<Object> objects = (List<Object>) inputs;
+        entry.worker.processBatch(objects);
+    }
+
+    @Override
+    public synchronized void init(PipeContext pipeCtx) {
+        if(null == entry){
+            throw new IllegalStateException("GraphPipeline has no entry node!");
+        }
+        List<Node> ordered = topologicalOrder();
+        for(Node node : ordered){
+            if(node.join){
+                ((JoinPipe<?, ?>) node.pipe).expected = node.upstreams.size();
+            }
+            node.pipe.setNextPipe(new Router(node));
+        }
+        //先启动下游节点，保证上游开始输出时下游已经就绪
+        for(int i=ordered.size() - 1; i>=0; i--){
+            ordered.get(i).worker.init(pipeCtx);
+        }
+    }
+
+    /**
+     * 按拓扑顺序依次等待各节点处理完已接收的元素并停止，所有节点共用一个总的期限timeout
+     */
+    @Override
+    public synchronized void shutdown(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(Node node : topologicalOrder()){
+            try {
+                node.worker.awaitDrained(deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            node.worker.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 各节点运行指标的快照，顺序与节点的添加顺序一致，阶段名称即节点名称
+     */
+    public synchronized List<PipeMetricsSnapshot> metricsSnapshot() {
+        List<PipeMetricsSnapshot> snapshots = new ArrayList<PipeMetricsSnapshot>(nodes.size());
+        for(Node node : nodes.values()){
+            snapshots.add(node.worker.getPipeMetrics().snapshot(node.name));
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return 按拓扑顺序排列的节点
+     * @throws IllegalStateException
+     *          图中存在环
+     */
+    private List<Node> topologicalOrder() {
+        Map<Node, Integer> inDegrees = new HashMap<Node, Integer>();
+        for(Node node : nodes.values()){
+            inDegrees.put(node, node.upstreams.size());
+        }
+        Deque<Node> ready = new ArrayDeque<Node>();
+        for(Node node : nodes.values()){
+            if(0 == inDegrees.get(node)){
+                ready.add(node);
+            }
+        }
+
+        List<Node> ordered = new ArrayList<Node>(nodes.size());
+        Node node;
+        while(null != (node = ready.poll())){
+            ordered.add(node);
+            Set<Node> targets = new LinkedHashSet<Node>();
+            for(Edge edge : node.edges){
+                targets.add(edge.target);
+            }
+            for(Node target : targets){
+                int inDegree = inDegrees.get(target) - 1;
+                inDegrees.put(target, inDegree);
+                if(0 == inDegree){
+                    ready.add(target);
+                }
+            }
+        }
+        if(ordered.size() != nodes.size()){
+            throw new IllegalStateException("GraphPipeline contains a cycle!");
+        }
+        return ordered;
+    }
+
+    /**
+     * 图中的节点
+     */
+    private class Node {
+        final String name;
+        final Pipe<Object, Object> pipe;
+        final WorkThreadPipeDecorator<Object, Object> worker;
+        final boolean join;
+        final List<Edge> edges = new ArrayList<Edge>();
+        //上游节点名称，同一上游的多条边只计一次
+        final Set<String> upstreams = new LinkedHashSet<String>();
+        volatile RoutingMode routingMode = RoutingMode.BROADCAST;
+        //条件均不成立而被丢弃的输出个数
+        final LongAdder unrouted = new LongAdder();
+
+        Node(String name, Pipe<Object, Object> pipe, int concurrency, boolean join) {
+            if(null == name){
+                throw new NullPointerException("name");
+            }
+            this.name = name;
+            this.pipe = pipe;
+            this.join = join;
+            this.worker = new WorkThreadPipeDecorator<Object, Object>(new LinkedBlockingQueue<Object>(edgeCapacity),
+                    pipe, concurrency);
+            worker.getPipeMetrics().registerGauge(GAUGE_UNROUTED, new LongSupplier() {
+                @Override
+                public long getAsLong() {
+                    return unrouted.sum();
+                }
+            });
+        }
+    }
+
+    private class Edge {
+        final Node target;
+        //null表示无条件
+        final Predicate<Object> predicate;
+
+        Edge(Node target, Predicate<Object> predicate) {
+            this.target = target;
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * 发往汇合节点的元素，附带其来源节点
+     */
+    private static class Tagged {
+        final String source;
+        final Object value;
+
+        Tagged(String source, Object value) {
+            this.source = source;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 节点的下一个Pipe：按出边将节点的输出交给下游节点的输入队列
+     */
+    private class Router implements Pipe<Object, Object> {
+        private final Node node;
+
+        Router(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void process(Object output) throws InterruptedException {
+            if(node.edges.isEmpty()){
+                Pipe<Object, ?> next = (Pipe<Object, ?>) nextPipe;
+                if(null != next){
+                    next.process(output);
+                }
+                return;
+            }
+
+            boolean routed = false;
+            for(Edge edge : node.edges){
+                if(null != edge.predicate && !edge.predicate.test(output)){
+                    continue;
+                }
+                edge.target.worker.process(edge.target.join ? new Tagged(node.name, output) : output);
+                routed = true;
+                if(RoutingMode.FIRST_MATCH == node.routingMode){
+                    break;
+                }
+            }
+            if(!routed){
+                node.unrouted.increment();
+            }
+        }
+
+        @Override
+        public void setNextPipe(Pipe<?, ?> nextPipe) {
+            //下游由图的边决定
+        }
+
+        @Override
+        public void init(PipeContext pipeCtx) {
+            //什么也不做
+        }
+
+        @Override
+        public void shutdown(long timeout, TimeUnit unit) {
+            //什么也不做
+        }
+    }
+
+    /**
+     * 汇合节点：按关联键收集各上游节点的输出，等齐后合并
+     */
+    private static class JoinPipe<K, O> extends AbsractPipe<Object, Object> {
+        private final String name;
+        private final KeyExtractor<Object, K> keyExtractor;
+        private final JoinCombiner<K, O> combiner;
+        private final int maxPendingJoins;
+        //入边的上游节点个数，init时确定
+        volatile int expected;
+        //按键的到达顺序排列，超出上限时丢弃最早的键
+        private final LinkedHashMap<K, Map<String, Object>> pending = new LinkedHashMap<K, Map<String, Object>>();
+
+        JoinPipe(String name, KeyExtractor<Object, K> keyExtractor, JoinCombiner<K, O> combiner, int maxPendingJoins) {
+            this.name = name;
+            this.keyExtractor = keyExtractor;
+            this.combiner = combiner;
+            this.maxPendingJoins = maxPendingJoins;
+            pipeMetrics.registerGauge(GAUGE_PENDING_JOINS, new LongSupplier() {
+                @Override
+                public long getAsLong() {
+                    synchronized (pending){
+                        return pending.size();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public Object doProcess(Object input) throws PipeException {
+            Tagged tagged = (Tagged) input;
+            K key = keyExtractor.extractKey(tagged.value);
+            Map<String, Object> complete = null;
+            Map<String, Object> evicted = null;
+            synchronized (pending){
+                Map<String, Object> outputs = pending.get(key);
+                if(null == outputs){
+                    outputs = new HashMap<String, Object>();
+                    pending.put(key, outputs);
+                }
+                outputs.put(tagged.source, tagged.value);
+                if(outputs.size() >= expected){
+                    complete = pending.remove(key);
+                }else if(pending.size() > maxPendingJoins){
+                    Iterator<Map<String, Object>> iterator = pending.values().iterator();
+                    evicted = iterator.next();
+                    iterator.remove();
+                }
+            }
+
+            //丢弃的是已收到的各上游节点的输出（上游节点名称 -> 输出），不能作为JoinPipe的输入重试
+            if(null != evicted){
+                handleError(new NonRetryablePipeException(this, evicted,
+                        "Join " + name + " dropped an incomplete key, more than " + maxPendingJoins + " keys pending"));
+            }
+            return null == complete ? null : combiner.combine(key, complete);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.orrin.util.concurrent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 以组提交（Group Commit）方式追加写入文件的终端Pipe
+ * 各上游线程只负责将记录序列化并放入待提交队列，由一个提交线程将队列中的记录汇聚为一组（至多maxGroupSize个，
+ * 不足时最多等待commitInterval），复制到预分配的直接内存写前缓冲区后以一次FileChannel的聚集写（gathering write）写入，
+ * 并对每组只调用一次force。这样，大量并发写入共同分摊一次fsync的延迟
+ * 1. 作为流水线的一个阶段时，doProcess在记录落盘后才返回该记录，此后的阶段只会看到已落盘的记录；
+ * 2. 也可通过append异步写入，记录落盘后以其在文件中的起始位置回调TaskCompletion
+ * 写入或force失败时，同一组的所有记录均以失败回调；作为流水线的阶段时，每个失败的记录以其自身为输入交由PipeContext处理，
+ * 关闭之后写入的记录以NonRetryablePipeException交由PipeContext处理
+ *
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     记录类型
+ */
+public class GroupCommitFileSink<IN> extends AbsractPipe<IN, IN> {
+    //写前缓冲区每段的字节数
+    private static final int WRITE_AHEAD_SEGMENT_SIZE = 256 * 1024;
+    //空闲的提交线程每隔该时间检查一次是否需要退出
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final File file;
+    private final FileChannel channel;
+    private final RecordSerializer<? super IN> serializer;
+    private final int maxGroupSize;
+    private final long commitIntervalMicros;
+    private final BlockingQueue<PendingWrite> pendingWrites;
+    private final TerminationToken terminationToken = new TerminationToken();
+    private final AbstractTerminatableThread committer;
+    //doProcess中等待落盘的凭据，每个线程一个
+    private final ThreadLocal<CompletionHandle<Long>> handles = new ThreadLocal<CompletionHandle<Long>>() {
+        @Override
+        protected CompletionHandle<Long> initialValue() {
+            return new CompletionHandle<Long>();
+        }
+    };
+    private volatile boolean closed = false;
+
+    //以下字段只由提交线程访问
+    private final List<ByteBuffer> writeAheadBuffer = new ArrayList<ByteBuffer>();
+    private long position;
+
+    private final LongAdder groupCount = new LongAdder();
+    private final LongAdder committedRecords = new LongAdder();
+    private final LongAdder committedBytes = new LongAdder();
+
+    public GroupCommitFileSink(File file, RecordSerializer<? super IN> serializer, int maxGroupSize,
+                               long commitInterval, TimeUnit unit) throws IOException {
+        this(file, serializer, maxGroupSize, commitInterval, unit, maxGroupSize * 16);
+    }
+
+    /**
+     * @param serializer
+     *          记录的序列化方式，序列化结果原样写入文件（如需换行须由serializer写入）
+     * @param maxGroupSize
+     *          每组最多提交的记录个数
+     * @param commitInterval
+     *          凑组时最多等待的时间，为0时只提交已到达的记录
+     * @param maxPendingWrites
+     *          待提交队列的容量，队列已满时写入方等待
+     */
+    public GroupCommitFileSink(File file, RecordSerializer<? super IN> serializer, int maxGroupSize,
+                               long commitInterval, TimeUnit unit, int maxPendingWrites) throws IOException {
+        super();
+        if(maxGroupSize <= 0 || commitInterval < 0 || maxPendingWrites <= 0){
+            throw new IllegalArgumentException("require positive maxGroupSize, maxPendingWrites and commitInterval >= 0!");
+        }
+        this.file = file;
+        this.serializer = serializer;
+        this.maxGroupSize = maxGroupSize;
+        this.commitIntervalMicros = unit.toMicros(commitInterval);
+        this.pendingWrites = new LinkedBlockingQueue<PendingWrite>(maxPendingWrites);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.position = channel.size();
+
+        this.committer = new AbstractTerminatableThread(terminationToken) {
+            @Override
+            protected void doRun() throws Exception {
+                commitGroup();
+            }
+        };
+        committer.setName("GroupCommitFileSink-" + file.getName());
+        committer.setDaemon(true);
+
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_QUEUE_DEPTH, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return pendingWrites.size();
+            }
+        });
+    }
+
+    @Override
+    public void init(PipeContext pipeCtx) {
+        super.init(pipeCtx);
+        committer.start();
+    }
+
+    /**
+     * 异步写入一个记录，待提交队列已满时等待
+     * @param completion
+     *          记录落盘后由提交线程回调，结果为该记录在文件中的起始位置
+     */
+    public void append(IN record, TaskCompletion<Long> completion) throws InterruptedException {
+        if(closed){
+            throw new IllegalStateException("GroupCommitFileSink closed: " + file);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(serializer.serializedSize(record));
+        serializer.serialize(record, buffer);
+        buffer.flip();
+
+        //先登记再入队，使提交线程的release总是发生在对应的reserve之后
+        terminationToken.reserve();
+        PendingWrite write = new PendingWrite(buffer, completion);
+        try {
+            pendingWrites.put(write);
+        } catch (InterruptedException e) {
+            terminationToken.release();
+            throw e;
+        }
+        //与shutdown并发时，shutdown可能已经取走了队列中的记录
+        if(closed && pendingWrites.remove(write)){
+            terminationToken.release();
+            throw new IllegalStateException("GroupCommitFileSink closed: " + file);
+        }
+    }
+
+    /**
+     * 写入input并等待其落盘
+     * @return input，即交给下一个Pipe实例的是已落盘的记录
+     */
+    @Override
+    public IN doProcess(IN input) throws PipeException {
+        CompletionHandle<Long> handle = handles.get();
+        try {
+            append(input, handle);
+            handle.await();
+            return input;
+        } catch (InterruptedException e) {
+            //记录可能仍未落盘，该凭据不能再使用
+            handles.remove();
+            Thread.currentThread().interrupt();
+            throw new PipeException(this, input, "Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            throw new PipeException(this, input, "Group commit failed", e.getCause());
+        } catch (IllegalStateException e) {
+            throw new NonRetryablePipeException(this, input, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 整个批次写入后等待全部落盘，同一批次的记录通常在同一组中提交
+     * 未能落盘的记录（提交失败、等待时被中断或已关闭）逐个交由PipeContext处理
+     * @return 已落盘的记录
+     */
+    @Override
+    public List<IN> doProcessBatch(List<IN> inputs) throws PipeException {
+        if(inputs.isEmpty()){
+            return inputs;
+        }
+        BatchCompletion completion = new BatchCompletion(inputs.size());
+        int appended = 0;
+        IllegalStateException closedFailure = null;
+        InterruptedException interrupted = null;
+        try {
+            try {
+                for(; appended < inputs.size(); appended++){
+                    append(inputs.get(appended), completion.recordAt(appended));
+                }
+            } catch (IllegalStateException e) {
+                //已关闭，其余记录不再写入
+                closedFailure = e;
+                completion.skip(inputs.size() - appended);
+            }
+            completion.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = e;
+        }
+
+        List<IN> committed = new ArrayList<IN>(appended);
+        for(int i=0; i<inputs.size(); i++){
+            IN input = inputs.get(i);
+            Object outcome = completion.outcomes.get(i);
+            if(outcome instanceof Long){
+                committed.add(input);
+            }else if(outcome instanceof Throwable){
+                handleError(new PipeException(this, input, "Group commit failed", (Throwable) outcome));
+            }else if(null != closedFailure && i >= appended){
+                handleError(new NonRetryablePipeException(this, input, closedFailure.getMessage(), closedFailure));
+            }else{
+                //记录可能仍未落盘
+                handleError(new PipeException(this, input, "Interrupted while waiting for group commit", interrupted));
+            }
+        }
+        return committed;
+    }
+
+    private void commitGroup() throws InterruptedException {
+        PendingWrite first = pendingWrites.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if(null == first){
+            return;
+        }
+        List<PendingWrite> group = new ArrayList<PendingWrite>(Math.min(maxGroupSize, 64));
+        group.add(first);
+
+        InterruptedException interrupted = null;
+        try {
+            QueueDrainer.drain(pendingWrites, group, maxGroupSize - 1, commitIntervalMicros, TimeUnit.MICROSECONDS);
+        } catch (InterruptedException e) {
+            //已经取出的记录仍需提交，提交后再响应中断
+            interrupted = e;
+        }
+
+        try {
+            commit(group);
+        } finally {
+            terminationToken.release(group.size());
+        }
+        if(null != interrupted){
+            throw interrupted;
+        }
+    }
+
+    private void commit(List<PendingWrite> group) {
+        final long start = position;
+        long bytes = 0;
+        Throwable failure = null;
+        try {
+            ByteBuffer[] buffers = fill(group);
+            for(ByteBuffer buffer : buffers){
+                bytes += buffer.remaining();
+            }
+            long written = 0;
+            while(written < bytes){
+                written += channel.write(buffers);
+            }
+            channel.force(false);
+            position += bytes;
+            groupCount.increment();
+            committedRecords.add(group.size());
+            committedBytes.add(bytes);
+        } catch (IOException e) {
+            failure = e;
+            try {
+                position = channel.size();
+            } catch (IOException ignored) {
+                //通道已不可用，后续提交同样会失败
+            }
+        }
+
+        long offset = start;
+        for(PendingWrite write : group){
+            try {
+                if(null == failure){
+                    write.completion.onComplete(offset, null);
+                }else{
+                    write.completion.onComplete(null, failure);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            offset += write.buffer.limit();
+        }
+    }
+
+    /**
+     * 将一组记录依次复制到写前缓冲区
+     * @return 已写入数据的各段，可直接用于聚集写
+     */
+    private ByteBuffer[] fill(List<PendingWrite> group) {
+        int segment = 0;
+        ByteBuffer current = writeAheadSegment(segment);
+        for(PendingWrite write : group){
+            ByteBuffer src = write.buffer;
+            while(src.hasRemaining()){
+                if(!current.hasRemaining()){
+                    current.flip();
+                    current = writeAheadSegment(++segment);
+                }
+                if(src.remaining() <= current.remaining()){
+                    current.put(src);
+                }else{
+                    ByteBuffer part = src.duplicate();
+                    part.limit(part.position() + current.remaining());
+                    current.put(part);
+                    src.position(part.position());
+                }
+            }
+            src.rewind();
+        }
+        current.flip();
+
+        ByteBuffer[] buffers = new ByteBuffer[segment + 1];
+        for(int i=0; i<=segment; i++){
+            buffers[i] = writeAheadBuffer.get(i);
+        }
+        return buffers;
+    }
+
+    private ByteBuffer writeAheadSegment(int index) {
+        if(index == writeAheadBuffer.size()){
+            writeAheadBuffer.add(ByteBuffer.allocateDirect(WRITE_AHEAD_SEGMENT_SIZE));
+        }
+        ByteBuffer segment = writeAheadBuffer.get(index);
+        segment.clear();
+        return segment;
+    }
+
+    /**
+     * @return 已提交的组数
+     */
+    public long getGroupCount() {
+        return groupCount.sum();
+    }
+
+    /**
+     * @return 已落盘的记录个数
+     */
+    public long getCommittedRecordCount() {
+        return committedRecords.sum();
+    }
+
+    /**
+     * @return 已落盘的字节数
+     */
+    public long getCommittedBytes() {
+        return committedBytes.sum();
+    }
+
+    /**
+     * 在timeout内提交已写入的记录后关闭文件，未能提交的记录以失败回调
+     */
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        closed = true;
+        committer.terminate();
+        if(committer.isAlive()){
+            try {
+                TimeUnit.NANOSECONDS.timedJoin(committer, Math.max(1, deadline - System.nanoTime()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        List<PendingWrite> unwritten = new ArrayList<PendingWrite>();
+        pendingWrites.drainTo(unwritten);
+        IOException failure = new IOException("GroupCommitFileSink closed before commit: " + file);
+        for(PendingWrite write : unwritten){
+            try {
+                write.completion.onComplete(null, failure);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        terminationToken.release(unwritten.size());
+    }
+
+    private static class PendingWrite {
+        final ByteBuffer buffer;
+        final TaskCompletion<Long> completion;
+
+        PendingWrite(ByteBuffer buffer, TaskCompletion<Long> completion) {
+            this.buffer = buffer;
+            this.completion = completion;
+        }
+    }
+
+    /**
+     * 等待一个批次的所有记录落盘，分别记录每个记录的结果
+     */
+    private static class BatchCompletion {
+        final AtomicInteger remaining;
+        //每个记录的结果：起始位置（Long）、失败原因（Throwable），尚未完成时为null
+        final AtomicReferenceArray<Object> outcomes;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        BatchCompletion(int count) {
+            this.remaining = new AtomicInteger(count);
+            this.outcomes = new AtomicReferenceArray<Object>(count);
+        }
+
+        TaskCompletion<Long> recordAt(final int index) {
+            return new TaskCompletion<Long>() {
+                @Override
+                public void onComplete(Long result, Throwable failure) {
+                    outcomes.set(index, null == failure ? result : failure);
+                    skip(1);
+                }
+            };
+        }
+
+        /**
+         * 不再等待count个未写入的记录
+         */
+        void skip(int count) {
+            if(0 == remaining.addAndGet(-count)){
+                done.countDown();
+            }
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 一次文件读取（MappedFileSource.feed）的结果
+ *
+ * @author orrin on 2026-10-17
+ */
+public class IngestionReport {
+    private final long bytes;
+    private final long records;
+    private final int chunks;
+    private final long elapsedNanos;
+
+    public IngestionReport(long bytes, long records, int chunks, long elapsedNanos) {
+        this.bytes = bytes;
+        this.records = records;
+        this.chunks = chunks;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 已读取的字节数，包括分隔符
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return 已交给流水线的记录个数
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return 文件被划分的块数
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos <= 0 ? 0 : bytes * 1e9 / elapsedNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos <= 0 ? 0 : records * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionReport{bytes=" + bytes + ", records=" + records + ", chunks=" + chunks
+                + ", elapsedMillis=" + elapsedNanos / 1000000
+                + ", bytesPerSecond=" + (long) getBytesPerSecond()
+                + ", recordsPerSecond=" + (long) getRecordsPerSecond() + "}";
+    }
+}
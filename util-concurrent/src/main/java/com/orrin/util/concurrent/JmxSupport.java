@@ -0,0 +1,41 @@
+package com.orrin.util.concurrent;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * 向平台MBeanServer注册/注销MBean的工具类
+ * @author orrin on 2026-10-17
+ */
+final class JmxSupport {
+    static final String DOMAIN = "com.orrin.util.concurrent";
+
+    private JmxSupport() {
+    }
+
+    static ObjectName register(Object mbean, String type, String name) throws JMException {
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if(server.isRegistered(objectName)){
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(mbean, objectName);
+        return objectName;
+    }
+
+    static void unregister(ObjectName objectName) {
+        if(null == objectName){
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if(server.isRegistered(objectName)){
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+}
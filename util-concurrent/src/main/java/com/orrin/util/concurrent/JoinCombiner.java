@@ -0,0 +1,24 @@
+package com.orrin.util.concurrent;
+
+import java.util.Map;
+
+/**
+ * GraphPipeline中汇合节点的合并逻辑：将同一个键在各条入边上的输出合并为一个输出
+ * @author orrin on 2026-10-17
+ *
+ * @param <K>
+ *      关联键的类型
+ * @param <OUT>
+ *      合并结果的类型
+ */
+public interface JoinCombiner<K, OUT> {
+    /**
+     * @param key
+     *          关联键
+     * @param branchOutputs
+     *          各上游节点（以节点名称为键）对该键的输出
+     * @return 合并结果，null表示没有输出
+     * @throws PipeException
+     */
+    public OUT combine(K key, Map<String, Object> branchOutputs) throws PipeException;
+}
@@ -0,0 +1,18 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 从输入元素中提取分区键，键相同的元素由同一个线程按提交顺序串行处理
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <K>
+ *     键的类型
+ */
+public interface KeyExtractor<IN, K> {
+    /**
+     * @param input
+     * @return 分区键，null视为同一个键
+     */
+    public K extractKey(IN input);
+}
@@ -0,0 +1,524 @@
+package com.orrin.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 按键分区的Pipe实现类：键相同的元素串行、键不同的元素并行
+ * 每个分区（Lane）是一个单线程的工作者线程及其专属的工作队列，键先散列到slotCount个虚拟槽位，
+ * 再由槽位映射到分区。同一个键的元素总是由同一个线程按提交顺序处理，被修饰的Pipe实例处理同一个键的状态时无需加锁
+ * （串行线程封闭，Serial Thread Confinement）
+ * 分区负载不均时可调用rebalance，将繁忙分区上的部分槽位迁移到空闲分区。槽位迁移后，
+ * 其在原分区中尚未处理完的元素构成一道栅栏：新分区取到该槽位的元素时先暂存，待原分区处理完这些元素后再依次处理，
+ * 因此迁移不会打乱同一个键的处理顺序，也不会阻塞新分区中其他槽位的处理
+ * 该类使用了两阶段终止模式（Two-phase Termination）
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ */
+public class KeyPartitionedPipeDecorator<IN, OUT> implements Pipe<IN, OUT>, MeasurablePipe, DrainablePipe {
+    private static final long PENDING_MASK = 0xffffffffL;
+
+    private final Pipe<IN, OUT> delegate;
+    private final KeyExtractor<? super IN, ?> keyExtractor;
+    private final PipeMetrics pipeMetrics;
+
+    private final List<Lane> lanes;
+    private final int slotCount;
+    //槽位当前所属的分区，由slotLocks中对应的锁保护
+    private final int[] slotLanes;
+    private final Object[] slotLocks;
+    //槽位状态：低32位为已提交但尚未处理完毕的元素个数，
+    //高32位为迁移栅栏，大于0表示迁移前提交的元素中还有(栅栏值-1)个未处理完，或新分区尚未处理暂存的元素
+    private final AtomicLongArray slotStates;
+    //自上次rebalance以来各槽位提交的元素个数
+    private final AtomicLongArray slotHits;
+
+    //rebalance时，最繁忙分区的负载超过最空闲分区的skewRatio倍才迁移槽位
+    private volatile double skewRatio = 1.5;
+
+    //排空时放弃的元素交给该handler，非null表示该阶段已被放弃
+    private volatile LeftoverHandler leftoverHandler;
+    private volatile String stageName;
+    private final LongAdder leftoverCount = new LongAdder();
+
+    public KeyPartitionedPipeDecorator(Pipe<IN, OUT> delegate, int laneCount,
+                                       KeyExtractor<? super IN, ?> keyExtractor) {
+        this(delegate, laneCount, keyExtractor, laneCount * 16, 1024);
+    }
+
+    /**
+     * @param laneCount
+     *          分区（线程）个数
+     * @param keyExtractor
+     * @param slotCount
+     *          虚拟槽位个数，即rebalance的最小迁移单位，不小于laneCount
+     * @param laneQueueCapacity
+     *          每个分区工作队列的容量
+     */
+    public KeyPartitionedPipeDecorator(Pipe<IN, OUT> delegate, int laneCount,
+                                       KeyExtractor<? super IN, ?> keyExtractor,
+                                       int slotCount, int laneQueueCapacity) {
+        if(laneCount <= 0){
+            throw new IllegalArgumentException("laneCount should be positive!");
+        }
+        if(slotCount < laneCount){
+            throw new IllegalArgumentException("slotCount should not be less than laneCount!");
+        }
+        if(null == keyExtractor){
+            throw new NullPointerException("keyExtractor");
+        }
+
+        this.delegate = delegate;
+        this.keyExtractor = keyExtractor;
+        this.slotCount = slotCount;
+        this.slotLanes = new int[slotCount];
+        this.slotLocks = new Object[slotCount];
+        this.slotStates = new AtomicLongArray(slotCount);
+        this.slotHits = new AtomicLongArray(slotCount);
+        for(int i=0; i<slotCount; i++){
+            slotLanes[i] = i % laneCount;
+            slotLocks[i] = new Object();
+        }
+
+        this.lanes = new ArrayList<Lane>(laneCount);
+        for(int i=0; i<laneCount; i++){
+            lanes.add(new Lane(i, new LinkedBlockingQueue<Partitioned<IN>>(laneQueueCapacity)));
+        }
+
+        this.pipeMetrics = delegate instanceof MeasurablePipe
+                ? ((MeasurablePipe) delegate).getPipeMetrics() : new PipeMetrics();
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_QUEUE_DEPTH, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                long depth = 0;
+                for(Lane lane : lanes){
+                    depth += lane.workQueue.size();
+                }
+                return depth;
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_IN_FLIGHT, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                long inFlight = 0;
+                for(Lane lane : lanes){
+                    inFlight += lane.terminationToken.reservationCount();
+                }
+                return inFlight;
+            }
+        });
+        for(int i=0; i<laneCount; i++){
+            final Lane lane = lanes.get(i);
+            pipeMetrics.registerGauge(PipeMetrics.GAUGE_LANE_DEPTH_PREFIX + i, new LongSupplier() {
+                @Override
+                public long getAsLong() {
+                    return lane.workQueue.size();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void process(IN input) throws InterruptedException {
+        if(null != leftoverHandler){
+            handOver(input);
+            return;
+        }
+
+        int slot = slotOf(keyExtractor.extractKey(input));
+        int laneIndex;
+        synchronized (slotLocks[slot]){
+            //在锁内确定分区并计数，保证迁移时的计数恰好是迁移前提交到原分区的元素
+            laneIndex = slotLanes[slot];
+            slotStates.getAndIncrement(slot);
+        }
+        slotHits.incrementAndGet(slot);
+
+        Lane lane = lanes.get(laneIndex);
+        lane.terminationToken.reserve();
+        try {
+            lane.workQueue.put(new Partitioned<IN>(input, slot));
+        } catch (InterruptedException e) {
+            lane.terminationToken.release();
+            completeOne(slot);
+            throw e;
+        }
+    }
+
+    /**
+     * 槽位的一个元素处理完毕：待处理元素个数减一，若该元素是迁移前提交的，栅栏值也减一
+     */
+    private void completeOne(int slot) {
+        for(;;){
+            long state = slotStates.get(slot);
+            long fence = state >>> 32;
+            long next = state - 1;
+            if(fence > 1){
+                next -= 1L << 32;
+            }
+            if(slotStates.compareAndSet(slot, state, next)){
+                return;
+            }
+        }
+    }
+
+    private long fenceOf(int slot) {
+        return slotStates.get(slot) >>> 32;
+    }
+
+    private void clearFence(int slot) {
+        for(;;){
+            long state = slotStates.get(slot);
+            if(slotStates.compareAndSet(slot, state, state & PENDING_MASK)){
+                return;
+            }
+        }
+    }
+
+    private int slotOf(Object key) {
+        if(null == key){
+            return 0;
+        }
+        int h = key.hashCode();
+        //与HashMap相同，将高位扰动到低位
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % slotCount;
+    }
+
+    /**
+     * 将繁忙分区上的槽位迁移到最空闲的分区
+     * 负载以自上次rebalance以来各分区提交的元素个数计，调用后重新开始统计
+     * @return 迁移的槽位个数
+     */
+    public synchronized int rebalance() {
+        int laneCount = lanes.size();
+        long[] hits = new long[slotCount];
+        long[] laneLoads = new long[laneCount];
+        for(int slot=0; slot<slotCount; slot++){
+            hits[slot] = slotHits.getAndSet(slot, 0);
+            laneLoads[laneOf(slot)] += hits[slot];
+        }
+
+        int moved = 0;
+        for(;;){
+            int busiest = 0;
+            int idlest = 0;
+            for(int i=1; i<laneCount; i++){
+                if(laneLoads[i] > laneLoads[busiest]){
+                    busiest = i;
+                }
+                if(laneLoads[i] < laneLoads[idlest]){
+                    idlest = i;
+                }
+            }
+            if(busiest == idlest || laneLoads[busiest] <= laneLoads[idlest] * skewRatio){
+                break;
+            }
+
+            //迁移后不能使目标分区比源分区更繁忙
+            long maxTransfer = (laneLoads[busiest] - laneLoads[idlest]) / 2;
+            int candidate = -1;
+            for(int slot=0; slot<slotCount; slot++){
+                if(laneOf(slot) == busiest && hits[slot] > 0 && hits[slot] <= maxTransfer
+                        && 0 == fenceOf(slot)
+                        && (candidate < 0 || hits[slot] > hits[candidate])){
+                    candidate = slot;
+                }
+            }
+            if(candidate < 0 || !moveSlot(candidate, idlest)){
+                break;
+            }
+
+            laneLoads[busiest] -= hits[candidate];
+            laneLoads[idlest] += hits[candidate];
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * 将槽位迁移到指定分区
+     * @return 是否迁移成功。槽位的上一次迁移尚未完成（栅栏仍在）时不迁移
+     */
+    public synchronized boolean moveSlot(int slot, int laneIndex) {
+        if(laneIndex < 0 || laneIndex >= lanes.size()){
+            throw new IllegalArgumentException("laneIndex out of range: " + laneIndex);
+        }
+        synchronized (slotLocks[slot]){
+            if(slotLanes[slot] == laneIndex){
+                return true;
+            }
+            for(;;){
+                long state = slotStates.get(slot);
+                if(0 != (state >>> 32)){
+                    return false;
+                }
+                long pending = state & PENDING_MASK;
+                if(0 == pending){
+                    break;
+                }
+                //此时所有待处理元素都在原分区中，处理完毕前新分区暂存该槽位的元素
+                if(slotStates.compareAndSet(slot, state, ((pending + 1) << 32) | pending)){
+                    break;
+                }
+            }
+            slotLanes[slot] = laneIndex;
+            return true;
+        }
+    }
+
+    private int laneOf(int slot) {
+        synchronized (slotLocks[slot]){
+            return slotLanes[slot];
+        }
+    }
+
+    public void setSkewRatio(double skewRatio) {
+        if(skewRatio < 1){
+            throw new IllegalArgumentException("skewRatio should not be less than 1!");
+        }
+        this.skewRatio = skewRatio;
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * @return 各分区工作队列的深度
+     */
+    public int[] getLaneDepths() {
+        int[] depths = new int[lanes.size()];
+        for(int i=0; i<depths.length; i++){
+            depths[i] = lanes.get(i).workQueue.size();
+        }
+        return depths;
+    }
+
+    @Override
+    public PipeMetrics getPipeMetrics() {
+        return pipeMetrics;
+    }
+
+    public Pipe<IN, OUT> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void setNextPipe(Pipe<?, ?> nextPipe) {
+        delegate.setNextPipe(nextPipe);
+    }
+
+    @Override
+    public void init(PipeContext pipeCtx) {
+        delegate.init(pipeCtx);
+        pipeCtx.registerEntry(delegate, this);
+        for(Lane lane : lanes){
+            lane.start();
+        }
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        for(Lane lane : lanes){
+            if(!lane.terminationToken.awaitDrained(deadlineNanos)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 各分区工作队列中的元素在调用线程中交出；因迁移栅栏而暂存的元素由各分区的线程自行交出
+     */
+    @Override
+    public void abandon(String stageName, LeftoverHandler handler) {
+        this.stageName = stageName;
+        this.leftoverHandler = handler;
+
+        for(Lane lane : lanes){
+            List<Partitioned<IN>> pending = new ArrayList<Partitioned<IN>>();
+            lane.workQueue.drainTo(pending);
+            for(Partitioned<IN> item : pending){
+                lane.handOver(item);
+            }
+        }
+    }
+
+    private void handOver(IN input) {
+        leftoverCount.increment();
+        try {
+            leftoverHandler.onLeftover(stageName, input);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getInFlightCount() {
+        long inFlight = 0;
+        for(Lane lane : lanes){
+            inFlight += lane.terminationToken.reservationCount();
+        }
+        return inFlight;
+    }
+
+    @Override
+    public long getLeftoverCount() {
+        return leftoverCount.sum();
+    }
+
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        //先通知所有分区停止，再在同一期限内等待
+        for(Lane lane : lanes){
+            lane.terminate();
+        }
+        for(Lane lane : lanes){
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if(remainingMillis <= 0){
+                break;
+            }
+            try {
+                lane.join(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        delegate.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 分区：单个工作者线程串行处理其工作队列中的元素
+     */
+    private class Lane extends AbstractTerminatableThread {
+        private final int index;
+        private final BlockingQueue<Partitioned<IN>> workQueue;
+        //因迁移栅栏而暂存的元素，仅由该分区的线程访问
+        private final Map<Integer, ArrayDeque<Partitioned<IN>>> parked = new HashMap<Integer, ArrayDeque<Partitioned<IN>>>();
+
+        Lane(int index, BlockingQueue<Partitioned<IN>> workQueue) {
+            super();
+            this.index = index;
+            this.workQueue = workQueue;
+        }
+
+        @Override
+        protected void doRun() throws Exception {
+            if(null != leftoverHandler){
+                handOverParked();
+            }
+
+            Partitioned<IN> item;
+            if(parked.isEmpty()){
+                item = workQueue.take();
+            }else{
+                //有暂存的元素时定期检查栅栏是否已解除
+                item = workQueue.poll(1, TimeUnit.MILLISECONDS);
+                releaseParked();
+            }
+            if(null == item){
+                return;
+            }
+            if(null != leftoverHandler){
+                handOver(item);
+                return;
+            }
+
+            //栅栏仅对迁入的分区有效，原分区照常处理迁移前提交的元素
+            if(fenceOf(item.slot) > 0 && laneOf(item.slot) == index){
+                ArrayDeque<Partitioned<IN>> queue = parked.get(item.slot);
+                if(null == queue){
+                    queue = new ArrayDeque<Partitioned<IN>>();
+                    parked.put(item.slot, queue);
+                }
+                queue.add(item);
+                return;
+            }
+            handle(item);
+        }
+
+        private void releaseParked() throws InterruptedException {
+            Iterator<Map.Entry<Integer, ArrayDeque<Partitioned<IN>>>> iterator = parked.entrySet().iterator();
+            while(iterator.hasNext()){
+                Map.Entry<Integer, ArrayDeque<Partitioned<IN>>> entry = iterator.next();
+                int slot = entry.getKey();
+                if(1 != fenceOf(slot)){
+                    continue;
+                }
+                //原分区已处理完迁移前的元素
+                Partitioned<IN> item;
+                while(null != (item = entry.getValue().poll())){
+                    handle(item);
+                }
+                iterator.remove();
+                clearFence(slot);
+            }
+        }
+
+        @Override
+        protected void doCleanup(Exception cause) {
+            if(null != leftoverHandler){
+                handOverParked();
+            }
+        }
+
+        private void handOverParked() {
+            for(ArrayDeque<Partitioned<IN>> queue : parked.values()){
+                Partitioned<IN> item;
+                while(null != (item = queue.poll())){
+                    handOver(item);
+                }
+            }
+            parked.clear();
+        }
+
+        private void handOver(Partitioned<IN> item) {
+            try {
+                KeyPartitionedPipeDecorator.this.handOver(item.input);
+            } finally {
+                completeOne(item.slot);
+                terminationToken.release();
+            }
+        }
+
+        private void handle(Partitioned<IN> item) throws InterruptedException {
+            try {
+                delegate.process(item.input);
+            } finally {
+                completeOne(item.slot);
+                terminationToken.release();
+            }
+        }
+    }
+
+    private static class Partitioned<IN> {
+        final IN input;
+        final int slot;
+
+        Partitioned(IN input, int slot) {
+            this.input = input;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.orrin.util.concurrent;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 对数-线性分桶的并发延迟直方图（思路与HdrHistogram相同）
+ * 每个2的幂次区间再线性划分为16个子桶，相对误差不超过1/16；
+ * 每个桶是一个LongAdder，记录时不分配对象，且多线程记录不会争用同一缓存行
+ * 所有桶在构造时预先分配，可记录的最大值约为2^40纳秒（约18分钟），更大的值计入最后一个桶
+ *
+ * @author orrin on 2026-10-17
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    }, 0);
+
+    public LatencyHistogram() {
+        for(int i=0; i<BUCKET_COUNT; i++){
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一个值
+     * @param value
+     *          通常为纳秒，负值按0处理
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * 记录count个相同的值，用于批量处理时按单个元素的平均耗时记录
+     */
+    public void record(long value, int count) {
+        if(count <= 0){
+            return;
+        }
+        if(value < 0){
+            value = 0;
+        }
+        buckets[indexOf(value)].add(count);
+        totalCount.add(count);
+        totalValue.add(value * count);
+        maxValue.accumulate(value);
+    }
+
+    public void reset() {
+        for(LongAdder bucket : buckets){
+            bucket.reset();
+        }
+        totalCount.reset();
+        totalValue.reset();
+        maxValue.reset();
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for(int i=0; i<BUCKET_COUNT; i++){
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+
+        long max = maxValue.get();
+        double mean = count > 0 ? (double) totalValue.sum() / count : 0;
+        return new Snapshot(count, mean,
+                valueAtPercentile(counts, count, 50.0, max),
+                valueAtPercentile(counts, count, 90.0, max),
+                valueAtPercentile(counts, count, 99.0, max),
+                valueAtPercentile(counts, count, 99.9, max),
+                max);
+    }
+
+    static int indexOf(long value) {
+        if(value < SUB_BUCKET_COUNT){
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if(exponent > MAX_EXPONENT){
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * 桶内可记录的最大值，作为落在该桶中的值的代表值
+     */
+    static long highestEquivalentValue(int index) {
+        if(index < SUB_BUCKET_COUNT){
+            return index;
+        }
+
+        int row = index / SUB_BUCKET_COUNT;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        int shift = row - 1;
+        long lowest = ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static long valueAtPercentile(long[] counts, long totalCount, double percentile, long max) {
+        if(totalCount <= 0){
+            return 0;
+        }
+
+        long target = (long) Math.ceil(totalCount * percentile / 100.0);
+        if(target < 1){
+            target = 1;
+        }
+
+        long seen = 0;
+        for(int i=0; i<counts.length; i++){
+            seen += counts[i];
+            if(seen >= target){
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 直方图的只读快照
+     */
+    public static class Snapshot {
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "p999", "max"})
+        public Snapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + String.format("%.1f", mean) + ", p50=" + p50 + ", p90=" + p90
+                    + ", p99=" + p99 + ", p99.9=" + p999 + ", max=" + max;
+        }
+    }
+}
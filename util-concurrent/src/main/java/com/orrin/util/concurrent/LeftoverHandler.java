@@ -0,0 +1,16 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 接收流水线排空（drain）时未能处理的元素，避免其随流水线停止而丢失
+ * 可能在多个线程中被调用，实现类须线程安全
+ * @author orrin on 2026-10-17
+ */
+public interface LeftoverHandler {
+    /**
+     * @param stageName
+     *          元素所在的处理阶段，格式与PipeMetricsSnapshot.getStageName一致
+     * @param input
+     *          该处理阶段尚未开始处理的输入元素
+     */
+    public void onLeftover(String stageName, Object input);
+}
@@ -0,0 +1,617 @@
+package com.orrin.util.concurrent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于内存映射文件的持久化阻塞队列
+ * 元素经RecordSerializer序列化后追加写入按段滚动的日志文件（每段segmentSize字节，文件名为该段第一个记录的序号），
+ * 写入只是对映射内存的写操作，由操作系统的页缓存负责落盘；syncBatchSize大于0时每追加syncBatchSize个记录调用一次force
+ * 消费位置记录在consumer.offset文件中：
+ * 1. autoAcknowledge为true时元素出队即视为消费完成；
+ * 2. 否则元素须经acknowledge确认，消费位置只推进到连续已确认的元素之后，
+ *    进程重启后从第一个未确认的元素开始重新投递（至少一次）
+ * 已全部消费完成的段文件会被删除
+ * 可作为WorkThreadPipeDecorator的工作队列，工作者线程处理完元素后自动确认
+ * 出队的元素是反序列化得到的新实例，确认时须使用该实例
+ *
+ * @author orrin on 2026-10-17
+ *
+ * @param <E>
+ *     元素类型
+ */
+public class MappedFileBlockingQueue<E> extends AbstractQueue<E> implements AcknowledgingQueue<E>, Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String OFFSET_FILE = "consumer.offset";
+    private static final int OFFSET_FILE_SIZE = 24;
+    //记录头：0表示尚未写入，-1表示本段结束，其余为记录长度+1
+    private static final int HEADER_EMPTY = 0;
+    private static final int HEADER_END = -1;
+    private static final int HEADER_SIZE = 4;
+
+    private final File directory;
+    private final RecordSerializer<E> serializer;
+    private final int segmentSize;
+    private final int capacity;
+    private final boolean autoAcknowledge;
+    private final int syncBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    //以下字段均由lock保护
+    //按第一个记录的序号排列的段
+    private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+    private final MappedByteBuffer offsetBuffer;
+    private final RandomAccessFile offsetFile;
+    private Segment writeSegment;
+    private int writePosition;
+    //下一个写入的记录序号
+    private long writeSequence;
+    private Segment readSegment;
+    private int readPosition;
+    //下一个读取的记录序号
+    private long readSequence;
+    //未确认的元素，按出队顺序排列
+    private final ArrayDeque<Delivery> deliveries = new ArrayDeque<Delivery>();
+    private final Map<Object, ArrayDeque<Delivery>> deliveriesByItem = new IdentityHashMap<Object, ArrayDeque<Delivery>>();
+    private int unsynced;
+    private boolean closed;
+
+    /**
+     * 使用默认的段大小，容量不限，只由页缓存负责落盘
+     */
+    public MappedFileBlockingQueue(File directory, RecordSerializer<E> serializer, boolean autoAcknowledge)
+            throws IOException {
+        this(directory, serializer, DEFAULT_SEGMENT_SIZE, Integer.MAX_VALUE, autoAcknowledge, 0);
+    }
+
+    /**
+     * @param directory
+     *          存放段文件及消费位置文件的目录，同一时刻只能由一个实例使用
+     * @param segmentSize
+     *          每个段文件的字节数，单个记录序列化后不能超过segmentSize - 8字节
+     * @param capacity
+     *          队列中最多容纳的（尚未出队的）记录个数
+     * @param syncBatchSize
+     *          每追加多少个记录调用一次force，0表示只由页缓存负责落盘
+     */
+    public MappedFileBlockingQueue(File directory, RecordSerializer<E> serializer, int segmentSize, int capacity,
+                                   boolean autoAcknowledge, int syncBatchSize) throws IOException {
+        if(segmentSize <= 2 * HEADER_SIZE || capacity <= 0 || syncBatchSize < 0){
+            throw new IllegalArgumentException("require segmentSize > 8, capacity > 0 and syncBatchSize >= 0!");
+        }
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            throw new IOException("Can not create directory " + directory);
+        }
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.capacity = capacity;
+        this.autoAcknowledge = autoAcknowledge;
+        this.syncBatchSize = syncBatchSize;
+
+        this.offsetFile = new RandomAccessFile(new File(directory, OFFSET_FILE), "rw");
+        this.offsetBuffer = offsetFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, OFFSET_FILE_SIZE);
+        recover();
+    }
+
+    /**
+     * 打开已有的段文件，从消费位置开始扫描以确定写入位置
+     */
+    private void recover() throws IOException {
+        File[] files = directory.listFiles();
+        if(null != files){
+            for(File file : files){
+                String name = file.getName();
+                if(name.endsWith(SEGMENT_SUFFIX)){
+                    long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(base, new Segment(base, file, segmentSize));
+                }
+            }
+        }
+        if(segments.isEmpty()){
+            segments.put(0L, newSegment(0));
+        }
+
+        long committedBase = offsetBuffer.getLong(0);
+        int committedPosition = (int) offsetBuffer.getLong(8);
+        long committedSequence = offsetBuffer.getLong(16);
+        Segment committed = segments.get(committedBase);
+        if(null == committed || committedPosition < 0 || committedPosition >= segmentSize
+                || committedSequence < committedBase){
+            //尚未消费过（或消费位置无效），从第一个段开始
+            committed = segments.firstEntry().getValue();
+            committedPosition = 0;
+            committedSequence = committed.base;
+        }
+        //消费位置之前的段已全部消费完成
+        for(Segment segment : new ArrayList<Segment>(segments.headMap(committed.base).values())){
+            deleteSegment(segment);
+        }
+
+        readSegment = committed;
+        readPosition = committedPosition;
+        readSequence = committedSequence;
+
+        Segment segment = committed;
+        int position = committedPosition;
+        long sequence = committedSequence;
+        for(;;){
+            int header = segment.buffer.getInt(position);
+            if(HEADER_END == header){
+                Map.Entry<Long, Segment> next = segments.higherEntry(segment.base);
+                if(null == next){
+                    //滚动时尚未创建下一个段
+                    next = newSegmentEntry(sequence);
+                }
+                segment = next.getValue();
+                position = 0;
+                continue;
+            }
+            if(header <= HEADER_EMPTY || position + HEADER_SIZE + header - 1 > segmentSize - HEADER_SIZE){
+                //尚未写入或不完整的记录
+                break;
+            }
+            position += HEADER_SIZE + header - 1;
+            sequence++;
+        }
+        //写入位置之后的段是无效的
+        for(Segment stale : new ArrayList<Segment>(segments.tailMap(segment.base, false).values())){
+            deleteSegment(stale);
+        }
+        writeSegment = segment;
+        writePosition = position;
+        writeSequence = sequence;
+        commit(readSegment, readPosition, readSequence);
+    }
+
+    private Map.Entry<Long, Segment> newSegmentEntry(long base) throws IOException {
+        segments.put(base, newSegment(base));
+        return segments.floorEntry(base);
+    }
+
+    private Segment newSegment(long base) throws IOException {
+        return new Segment(base, new File(directory, String.format("%020d%s", base, SEGMENT_SUFFIX)), segmentSize);
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.base);
+        segment.close();
+        if(!segment.file.delete()){
+            segment.file.deleteOnExit();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if(writeSequence - readSequence >= capacity){
+                return false;
+            }
+            append(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(writeSequence - readSequence >= capacity){
+                notFull.await();
+            }
+            append(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(writeSequence - readSequence >= capacity){
+                if(nanos <= 0){
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            append(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(E e) {
+        checkOpen();
+        int length = serializer.serializedSize(e);
+        if(length < 0 || length > segmentSize - 2 * HEADER_SIZE){
+            throw new IllegalArgumentException("Record size " + length + " exceeds segment size " + segmentSize);
+        }
+        //保留一个记录头的空间用于写入段结束标志
+        if(writePosition + HEADER_SIZE + length > segmentSize - HEADER_SIZE){
+            roll();
+        }
+
+        ByteBuffer buffer = writeSegment.buffer.duplicate();
+        buffer.position(writePosition + HEADER_SIZE);
+        buffer.limit(writePosition + HEADER_SIZE + length);
+        serializer.serialize(e, buffer.slice());
+        //最后写入记录头，使记录对重启后的扫描可见
+        writeSegment.buffer.putInt(writePosition, length + 1);
+        writePosition += HEADER_SIZE + length;
+        writeSequence++;
+
+        if(syncBatchSize > 0 && ++unsynced >= syncBatchSize){
+            writeSegment.buffer.force();
+            unsynced = 0;
+        }
+        notEmpty.signal();
+    }
+
+    private void roll() {
+        Segment previous = writeSegment;
+        try {
+            writeSegment = newSegmentEntry(writeSequence).getValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        previous.buffer.putInt(writePosition, HEADER_END);
+        if(syncBatchSize > 0){
+            previous.buffer.force();
+        }
+        writePosition = 0;
+    }
+
+    @Override
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return readSequence == writeSequence ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(readSequence == writeSequence){
+                checkOpen();
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while(readSequence == writeSequence){
+                if(nanos <= 0 || closed){
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private E dequeue() {
+        checkOpen();
+        int header = readSegment.buffer.getInt(readPosition);
+        if(HEADER_END == header){
+            readSegment = segments.higherEntry(readSegment.base).getValue();
+            readPosition = 0;
+            header = readSegment.buffer.getInt(readPosition);
+        }
+        E e = read(readSegment, readPosition, header - 1);
+        readPosition += HEADER_SIZE + header - 1;
+        readSequence++;
+
+        if(autoAcknowledge){
+            commit(readSegment, readPosition, readSequence);
+        }else{
+            Delivery delivery = new Delivery(readSegment, readPosition, readSequence);
+            deliveries.add(delivery);
+            ArrayDeque<Delivery> sameItem = deliveriesByItem.get(e);
+            if(null == sameItem){
+                sameItem = new ArrayDeque<Delivery>(1);
+                deliveriesByItem.put(e, sameItem);
+            }
+            sameItem.add(delivery);
+        }
+        notFull.signal();
+        return e;
+    }
+
+    private E read(Segment segment, int position, int length) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position + HEADER_SIZE);
+        buffer.limit(position + HEADER_SIZE + length);
+        return serializer.deserialize(buffer.slice());
+    }
+
+    /**
+     * autoAcknowledge为false时，消费位置推进到连续已确认的元素之后
+     */
+    @Override
+    public void acknowledge(E item) {
+        if(autoAcknowledge){
+            return;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ArrayDeque<Delivery> sameItem = deliveriesByItem.get(item);
+            if(null == sameItem){
+                return;
+            }
+            sameItem.poll().acknowledged = true;
+            if(sameItem.isEmpty()){
+                deliveriesByItem.remove(item);
+            }
+
+            Delivery last = null;
+            while(!deliveries.isEmpty() && deliveries.peek().acknowledged){
+                last = deliveries.poll();
+            }
+            if(null != last && !closed){
+                commit(last.segment, last.position, last.sequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录消费位置，并删除已全部消费完成的段
+     */
+    private void commit(Segment segment, int position, long sequence) {
+        offsetBuffer.putLong(0, segment.base);
+        offsetBuffer.putLong(8, position);
+        offsetBuffer.putLong(16, sequence);
+        if(segments.firstKey() < segment.base){
+            for(Segment consumed : new ArrayList<Segment>(segments.headMap(segment.base).values())){
+                deleteSegment(consumed);
+            }
+        }
+    }
+
+    /**
+     * 将已写入的记录及消费位置强制落盘
+     */
+    public void sync() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            checkOpen();
+            writeSegment.buffer.force();
+            offsetBuffer.force();
+            unsynced = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if(readSequence == writeSequence){
+                return null;
+            }
+            checkOpen();
+            Segment segment = readSegment;
+            int header = segment.buffer.getInt(readPosition);
+            if(HEADER_END == header){
+                segment = segments.higherEntry(segment.base).getValue();
+                return read(segment, 0, segment.buffer.getInt(0) - 1);
+            }
+            return read(segment, readPosition, header - 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, writeSequence - readSequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * @return 已出队但尚未确认的元素个数
+     */
+    public int getUnacknowledgedCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return deliveries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if(c == this){
+            throw new IllegalArgumentException();
+        }
+
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = 0;
+            while(n < maxElements && readSequence != writeSequence){
+                c.add(dequeue());
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回队列当前内容的快照迭代器，不支持remove
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<E>();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Segment segment = readSegment;
+            int position = readPosition;
+            for(long sequence = readSequence; sequence < writeSequence; sequence++){
+                int header = segment.buffer.getInt(position);
+                if(HEADER_END == header){
+                    segment = segments.higherEntry(segment.base).getValue();
+                    position = 0;
+                    header = segment.buffer.getInt(position);
+                }
+                snapshot.add(read(segment, position, header - 1));
+                position += HEADER_SIZE + header - 1;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * 落盘并关闭所有文件，此后不能再使用该队列；未确认的元素在重新打开后将再次投递
+     */
+    @Override
+    public void close() throws IOException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if(closed){
+                return;
+            }
+            writeSegment.buffer.force();
+            offsetBuffer.force();
+            closed = true;
+            for(Segment segment : segments.values()){
+                segment.close();
+            }
+            offsetFile.close();
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if(closed){
+            throw new IllegalStateException("Queue closed: " + directory);
+        }
+    }
+
+    private static void checkNotNull(Object e) {
+        if(null == e){
+            throw new NullPointerException();
+        }
+    }
+
+    private static class Segment {
+        final long base;
+        final File file;
+        final RandomAccessFile raf;
+        final MappedByteBuffer buffer;
+
+        Segment(long base, File file, int size) throws IOException {
+            this.base = base;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 一个已出队的元素，确认之后消费位置可推进到其之后
+     */
+    private static class Delivery {
+        final Segment segment;
+        final int position;
+        final long sequence;
+        boolean acknowledged;
+
+        Delivery(Segment segment, int position, long sequence) {
+            this.segment = segment;
+            this.position = position;
+            this.sequence = sequence;
+        }
+    }
+}
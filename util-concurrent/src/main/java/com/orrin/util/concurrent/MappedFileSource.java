@@ -0,0 +1,246 @@
+package com.orrin.util.concurrent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于内存映射的文件读取源，作为流水线的第一个阶段
+ * 文件按chunkSize划分为若干块，每块的边界对齐到分隔符之后，使记录不跨块；
+ * readerThreads个读取线程并行地以FileChannel.map映射各块，按分隔符切分出记录并交给流水线
+ * feed(Pipe<ByteBuffer, ?>)以只读ByteBuffer切片的形式交出记录（不含分隔符），不复制数据；
+ * 切片与映射共享内存，第一个阶段须能处理ByteBuffer。否则使用feed(Pipe, RecordDecoder)先解码再交给流水线
+ * 文件末尾没有分隔符的最后一个记录同样会被交出
+ *
+ * @author orrin on 2026-10-17
+ */
+public class MappedFileSource {
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    //查找块边界时每次读取的字节数
+    private static final int BOUNDARY_SCAN_SIZE = 8192;
+
+    private final File file;
+    private final byte delimiter;
+    private final int readerThreads;
+    private final long chunkSize;
+    //大于1时以processBatch交出记录
+    private final int batchSize;
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder recordsRead = new LongAdder();
+
+    /**
+     * 按行读取，每次交出一个记录
+     */
+    public MappedFileSource(File file, int readerThreads) {
+        this(file, (byte) '\n', readerThreads, DEFAULT_CHUNK_SIZE, 1);
+    }
+
+    /**
+     * @param delimiter
+     *          记录分隔符
+     * @param chunkSize
+     *          每块的期望字节数，单个块（即对齐后的块）不能超过Integer.MAX_VALUE字节
+     * @param batchSize
+     *          大于1时每次以processBatch交出至多batchSize个记录
+     */
+    public MappedFileSource(File file, byte delimiter, int readerThreads, long chunkSize, int batchSize) {
+        if(readerThreads <= 0 || chunkSize <= 0 || chunkSize > Integer.MAX_VALUE || batchSize <= 0){
+            throw new IllegalArgumentException("require positive readerThreads, batchSize and chunkSize <= Integer.MAX_VALUE!");
+        }
+        this.file = file;
+        this.delimiter = delimiter;
+        this.readerThreads = readerThreads;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 以ByteBuffer切片的形式将文件中的所有记录交给pipe，所有记录交出后返回
+     */
+    public IngestionReport feed(Pipe<ByteBuffer, ?> pipe) throws IOException, InterruptedException {
+        return feed(pipe, null);
+    }
+
+    /**
+     * 将文件中的所有记录经decoder解码后交给pipe，所有记录交出后返回
+     * @param decoder
+     *          为null时直接交出ByteBuffer切片
+     */
+    public <T> IngestionReport feed(final Pipe<T, ?> pipe, final RecordDecoder<T> decoder)
+            throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final long bytesBefore = bytesRead.sum();
+        final long recordsBefore = recordsRead.sum();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long[] boundaries = split(channel);
+            final AtomicInteger nextChunk = new AtomicInteger();
+            final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+            int threadCount = Math.min(readerThreads, boundaries.length - 1);
+            List<Thread> readers = new ArrayList<Thread>(threadCount);
+            for(int i=0; i<threadCount; i++){
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        int chunk;
+                        while(null == failure.get() && (chunk = nextChunk.getAndIncrement()) < boundaries.length - 1){
+                            try {
+                                readChunk(channel, boundaries[chunk], boundaries[chunk + 1], pipe, decoder);
+                            } catch (Exception e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    }
+                }, "MappedFileSource-Reader-" + i);
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+
+            try {
+                for(Thread reader : readers){
+                    reader.join();
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                for(Thread reader : readers){
+                    reader.interrupt();
+                }
+                throw e;
+            }
+
+            Exception e = failure.get();
+            if(e instanceof IOException){
+                throw (IOException) e;
+            }else if(e instanceof InterruptedException){
+                throw (InterruptedException) e;
+            }else if(e instanceof RuntimeException){
+                throw (RuntimeException) e;
+            }
+            return new IngestionReport(bytesRead.sum() - bytesBefore, recordsRead.sum() - recordsBefore,
+                    boundaries.length - 1, System.nanoTime() - start);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 将文件划分为若干块，每块（最后一块除外）以分隔符结尾
+     * @return 各块的起始位置，最后一个元素为文件长度
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long position = 0;
+        while(position < size){
+            long end = Math.min(size, position + chunkSize);
+            //将块的结尾推进到下一个分隔符之后
+            long scanFrom = end - 1;
+            while(end < size){
+                scan.clear();
+                int n = channel.read(scan, scanFrom);
+                if(n <= 0){
+                    end = size;
+                    break;
+                }
+                int found = indexOf(scan, 0, n);
+                if(found >= 0){
+                    end = scanFrom + found + 1;
+                    break;
+                }
+                scanFrom += n;
+                end = Math.min(size, scanFrom);
+            }
+            if(end - position > Integer.MAX_VALUE){
+                throw new IOException("Record larger than " + Integer.MAX_VALUE + " bytes at " + position + " in " + file);
+            }
+            boundaries.add(end);
+            position = end;
+        }
+
+        long[] result = new long[boundaries.size()];
+        for(int i=0; i<result.length; i++){
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private int indexOf(ByteBuffer buffer, int from, int to) {
+        for(int i=from; i<to; i++){
+            if(delimiter == buffer.get(i)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void readChunk(FileChannel channel, long from, long to, Pipe<T, ?> pipe, RecordDecoder<T> decoder)
+            throws IOException, InterruptedException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        ByteBuffer chunk = mapped.asReadOnlyBuffer();
+        final int limit = chunk.limit();
+        List<T> batch = batchSize > 1 ? new ArrayList<T>(batchSize) : null;
+        int recordStart = 0;
+        while(recordStart < limit){
+            int recordEnd = recordStart;
+            while(recordEnd < limit && delimiter != chunk.get(recordEnd)){
+                recordEnd++;
+            }
+
+            ByteBuffer slice = chunk.duplicate();
+            slice.limit(recordEnd).position(recordStart);
+            ByteBuffer record = slice.slice();
+            T input = null == decoder ? (T) record : decoder.decode(record);
+            if(null != input){
+                recordsRead.increment();
+                if(null == batch){
+                    pipe.process(input);
+                }else{
+                    batch.add(input);
+                    if(batch.size() >= batchSize){
+                        pipe.processBatch(batch);
+                        batch = new ArrayList<T>(batchSize);
+                    }
+                }
+            }
+            int next = Math.min(limit, recordEnd + 1);
+            bytesRead.add(next - recordStart);
+            recordStart = next;
+            if(Thread.currentThread().isInterrupted()){
+                throw new InterruptedException();
+            }
+        }
+        if(null != batch && !batch.isEmpty()){
+            pipe.processBatch(batch);
+        }
+    }
+
+    /**
+     * @return 累计读取的字节数，可在feed执行期间用于观察读取速度
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * @return 累计交给流水线的记录个数
+     */
+    public long getRecordsRead() {
+        return recordsRead.sum();
+    }
+}
@@ -0,0 +1,13 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 可提供运行指标的Pipe
+ * @author orrin on 2026-10-17
+ */
+public interface MeasurablePipe {
+    /**
+     * 返回该Pipe实例的运行指标，同一Pipe实例每次返回同一个对象
+     * @return
+     */
+    public PipeMetrics getPipeMetrics();
+}
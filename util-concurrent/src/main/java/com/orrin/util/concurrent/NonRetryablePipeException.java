@@ -0,0 +1,19 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 不应重试的PipeException：input并非sourcePipe的输入元素（如汇合节点丢弃的未完成输出），
+ * 或sourcePipe已关闭，重新交给sourcePipe处理没有意义，PipeContext应直接记录或丢弃
+ * @author orrin on 2026-10-17
+ */
+public class NonRetryablePipeException extends PipeException {
+
+    private static final long serialVersionUID = -3187602285417394117L;
+
+    public NonRetryablePipeException(Pipe<?, ?> sourcePipe, Object input, String message) {
+        super(sourcePipe, input, message);
+    }
+
+    public NonRetryablePipeException(Pipe<?, ?> sourcePipe, Object input, String message, Throwable cause) {
+        super(sourcePipe, input, message, cause);
+    }
+}
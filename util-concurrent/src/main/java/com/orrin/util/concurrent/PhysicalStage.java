@@ -0,0 +1,46 @@
+package com.orrin.util.concurrent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SimplePipeline经阶段融合后的物理执行计划中的一个阶段
+ *
+ * @author orrin on 2026-10-17
+ */
+public class PhysicalStage {
+    private final String name;
+    private final boolean handOff;
+    private final List<String> logicalStages;
+
+    public PhysicalStage(String name, boolean handOff, List<String> logicalStages) {
+        this.name = name;
+        this.handOff = handOff;
+        this.logicalStages = Collections.unmodifiableList(logicalStages);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 进入该阶段时是否经过队列与线程交接。为false时该阶段在上一阶段（或提交元素）的线程中执行
+     */
+    public boolean isHandOff() {
+        return handOff;
+    }
+
+    /**
+     * @return 该阶段包含的逻辑处理阶段，名称与metricsSnapshot中的阶段名称一致
+     */
+    public List<String> getLogicalStages() {
+        return logicalStages;
+    }
+
+    @Override
+    public String toString() {
+        //=>表示经过线程交接，->表示在上一阶段的线程中执行
+        String stages = 1 == logicalStages.size() && name.equals(logicalStages.get(0)) ? "" : logicalStages.toString();
+        return (handOff ? "=> " : "-> ") + name + stages;
+    }
+}
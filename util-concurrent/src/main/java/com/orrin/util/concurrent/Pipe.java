@@ -1,5 +1,6 @@
 package com.orrin.util.concurrent;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,6 +27,18 @@ public interface Pipe<IN, OUT> {
      */
     public void process(IN input) throws InterruptedException;
 
+    /**
+     * 对一批输入元素进行处理，并将处理结果作为下一个Pipe实例的输入
+     * 默认逐个调用process方法，未实现批量处理的Pipe无需做任何改动
+     * @param inputs
+     * @throws InterruptedException
+     */
+    public default void processBatch(List<IN> inputs) throws InterruptedException {
+        for(IN input : inputs){
+            process(input);
+        }
+    }
+
     public void init(PipeContext pipeCtx);
     public void shutdown(long timeout, TimeUnit unit);
 }
@@ -10,4 +10,17 @@ public interface PipeContext {
      * @param exp
      */
     public void handleError(PipeException exp);
+
+    /**
+     * 登记stage的进入点：修饰器在init时以自身作为被修饰Pipe实例的进入点，
+     * 需要重新处理stage的某个输入元素（如重试）时应交给进入点，使其仍经过修饰器的线程、分区、准入控制与限流
+     * 默认什么也不做
+     * @param stage
+     *          被修饰的Pipe实例，即PipeException.sourcePipe
+     * @param entry
+     *          修饰stage的Pipe实例
+     */
+    public default void registerEntry(Pipe<?, ?> stage, Pipe<?, ?> entry) {
+        //什么也不做
+    }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.orrin.util.concurrent;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 单个处理阶段的运行指标
+ * 计数器使用LongAdder（分段计数），记录路径上不分配对象，多个工作者线程同时记录也不会形成争用热点
+ * 队列深度、在途任务数等瞬时值以Gauge的形式注册，仅在生成快照时读取
+ *
+ * @author orrin on 2026-10-17
+ */
+public class PipeMetrics {
+    public static final String GAUGE_QUEUE_DEPTH = "queueDepth";
+    public static final String GAUGE_IN_FLIGHT = "inFlight";
+    public static final String GAUGE_AVAILABLE_CREDITS = "availableCredits";
+    public static final String GAUGE_ADMISSION_REJECTED = "admissionRejected";
+    public static final String GAUGE_REORDER_OCCUPANCY = "reorderOccupancy";
+    public static final String GAUGE_HEAD_OF_LINE_WAITING = "headOfLineWaiting";
+    public static final String GAUGE_HEAD_OF_LINE_STALLS = "headOfLineStalls";
+    public static final String GAUGE_HEAD_OF_LINE_STALL_MILLIS = "headOfLineStallMillis";
+    //按键分区的Pipe中各分区的队列深度，名称后缀为分区序号
+    public static final String GAUGE_LANE_DEPTH_PREFIX = "laneDepth.";
+
+    private final LongAdder itemsIn = new LongAdder();
+    private final LongAdder itemsOut = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    //doProcess的耗时（纳秒）
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<String, LongSupplier>();
+
+    public void recordIn(int count) {
+        itemsIn.add(count);
+    }
+
+    public void recordOut(int count) {
+        itemsOut.add(count);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * 记录一次处理的耗时
+     * @param elapsedNanos
+     *          本次处理的总耗时
+     * @param count
+     *          本次处理的元素个数，批量处理时按单个元素的平均耗时记录count次
+     */
+    public void recordLatency(long elapsedNanos, int count) {
+        if(count > 0){
+            latency.record(elapsedNanos / count, count);
+        }
+    }
+
+    /**
+     * 注册一个瞬时值，同名的Gauge会被替换
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public long getItemsIn() {
+        return itemsIn.sum();
+    }
+
+    public long getItemsOut() {
+        return itemsOut.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public PipeMetricsSnapshot snapshot(String stageName) {
+        Map<String, Long> gaugeValues = new TreeMap<String, Long>();
+        for(Map.Entry<String, LongSupplier> entry : gauges.entrySet()){
+            gaugeValues.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return new PipeMetricsSnapshot(stageName, itemsIn.sum(), itemsOut.sum(), errors.sum(),
+                latency.snapshot(), gaugeValues);
+    }
+}
@@ -0,0 +1,78 @@
+package com.orrin.util.concurrent;
+
+import java.beans.ConstructorProperties;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 单个处理阶段运行指标的只读快照
+ * 属性均以getter的形式提供，可直接通过MXBean发布
+ *
+ * @author orrin on 2026-10-17
+ */
+public class PipeMetricsSnapshot {
+    private final String stageName;
+    private final long itemsIn;
+    private final long itemsOut;
+    private final long errors;
+    //doProcess耗时（纳秒）
+    private final LatencyHistogram.Snapshot latency;
+    private final Map<String, Long> gauges;
+
+    @ConstructorProperties({"stageName", "itemsIn", "itemsOut", "errors", "latency", "gauges"})
+    public PipeMetricsSnapshot(String stageName, long itemsIn, long itemsOut, long errors,
+                               LatencyHistogram.Snapshot latency, Map<String, Long> gauges) {
+        this.stageName = stageName;
+        this.itemsIn = itemsIn;
+        this.itemsOut = itemsOut;
+        this.errors = errors;
+        this.latency = latency;
+        this.gauges = Collections.unmodifiableMap(gauges);
+    }
+
+    public String getStageName() {
+        return stageName;
+    }
+
+    public long getItemsIn() {
+        return itemsIn;
+    }
+
+    public long getItemsOut() {
+        return itemsOut;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    /**
+     * @return 工作队列的当前长度，该阶段没有工作队列时返回-1
+     */
+    public long getQueueDepth() {
+        Long value = gauges.get(PipeMetrics.GAUGE_QUEUE_DEPTH);
+        return null == value ? -1 : value;
+    }
+
+    /**
+     * @return 已提交但尚未处理完成的元素个数（TerminationToken.reservationCount），不适用时返回-1
+     */
+    public long getInFlight() {
+        Long value = gauges.get(PipeMetrics.GAUGE_IN_FLIGHT);
+        return null == value ? -1 : value;
+    }
+
+    @Override
+    public String toString() {
+        return stageName + "{in=" + itemsIn + ", out=" + itemsOut + ", errors=" + errors
+                + ", gauges=" + gauges + ", latencyNanos=[" + latency + "]}";
+    }
+}
@@ -0,0 +1,15 @@
+package com.orrin.util.concurrent;
+
+import java.util.List;
+
+/**
+ * 通过JMX发布流水线各处理阶段的运行指标
+ * @author orrin on 2026-10-17
+ */
+public interface PipelineMetricsMXBean {
+    /**
+     * 各处理阶段的指标快照，顺序与处理阶段的先后顺序一致
+     * @return
+     */
+    public List<PipeMetricsSnapshot> getStageMetrics();
+}
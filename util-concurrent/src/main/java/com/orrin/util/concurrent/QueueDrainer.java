@@ -0,0 +1,62 @@
+package com.orrin.util.concurrent;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量从阻塞队列中取出元素的工具类
+ * 先以非阻塞的方式尽可能多地取出元素，不足指定个数时在给定的时间内继续等待新元素的到达
+ *
+ * @author orrin on 2026-10-17
+ */
+public final class QueueDrainer {
+
+    private QueueDrainer() {
+    }
+
+    /**
+     * 从队列中取出至多maxElements个元素放入buffer
+     * @param queue
+     *          源队列
+     * @param buffer
+     *          存放取出元素的容器
+     * @param maxElements
+     *          最多取出的元素个数
+     * @param timeout
+     *          元素不足时最多等待的时间，小于等于0表示不等待
+     * @param unit
+     *          timeout的时间单位
+     * @return 实际取出的元素个数
+     * @throws InterruptedException
+     *          等待期间被中断。中断前已取出的元素仍保留在buffer中
+     */
+    public static <E> int drain(BlockingQueue<E> queue, Collection<? super E> buffer,
+                                int maxElements, long timeout, TimeUnit unit) throws InterruptedException {
+        if(maxElements <= 0){
+            return 0;
+        }
+
+        int added = queue.drainTo(buffer, maxElements);
+        if(added >= maxElements || timeout <= 0){
+            return added;
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(added < maxElements){
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0){
+                break;
+            }
+
+            E e = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if(null == e){
+                break;
+            }
+            buffer.add(e);
+            added++;
+            added += queue.drainTo(buffer, maxElements - added);
+        }
+        return added;
+    }
+}
@@ -0,0 +1,274 @@
+package com.orrin.util.concurrent;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 限流的Pipe实现类：提交到该Pipe的元素按RateLimiter的速率交给被修饰的Pipe实例
+ * 可以立即取得许可的元素在提交线程中直接交给被修饰的Pipe实例；需要等待的元素由时间轮定时，
+ * 到期后由专门的转发线程交给被修饰的Pipe实例，提交线程（通常是上游的工作者线程）不会因此被占用。
+ * 等待中的元素超过maxThrottled个时提交方才需要等待，以此形成反压
+ * 转发线程只有一个，被修饰的Pipe实例通常应是WorkThreadPipeDecorator等自带线程的Pipe；
+ * 等待中的元素到期后不保证按提交顺序交出
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ */
+public class RateLimitedPipeDecorator<IN, OUT> implements Pipe<IN, OUT>, MeasurablePipe, DrainablePipe {
+    /**
+     * 等待许可的元素个数
+     */
+    public static final String GAUGE_THROTTLED = "throttled";
+
+    public static final int DEFAULT_MAX_THROTTLED = 10000;
+    private static final long TICK_MILLIS = 1;
+    private static final int WHEEL_SIZE = 1024;
+
+    private final Pipe<IN, OUT> delegate;
+    private final RateLimiter rateLimiter;
+    private final PipeMetrics pipeMetrics;
+    //等待许可的元素个数上限
+    private final Semaphore throttleSlots;
+    private final ThreadPoolExecutor dispatcher;
+    private final TimerWheel timer;
+    private final TerminationToken terminationToken = new TerminationToken();
+    private final LongAdder throttledCount = new LongAdder();
+
+    //排空时放弃的元素交给该handler，非null表示该阶段已被放弃
+    private volatile LeftoverHandler leftoverHandler;
+    private volatile String stageName;
+    private final LongAdder leftoverCount = new LongAdder();
+
+    public RateLimitedPipeDecorator(Pipe<IN, OUT> delegate, RateLimiter rateLimiter) {
+        this(delegate, rateLimiter, DEFAULT_MAX_THROTTLED);
+    }
+
+    public RateLimitedPipeDecorator(Pipe<IN, OUT> delegate, RateLimiter rateLimiter, int maxThrottled) {
+        if(maxThrottled <= 0){
+            throw new IllegalArgumentException("maxThrottled should be positive!");
+        }
+        this.delegate = delegate;
+        this.rateLimiter = rateLimiter;
+        this.throttleSlots = new Semaphore(maxThrottled);
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "RateLimitedPipe-Dispatcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.timer = new TimerWheel("RateLimitedPipe-Timer", TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE, dispatcher);
+        this.pipeMetrics = delegate instanceof MeasurablePipe
+                ? ((MeasurablePipe) delegate).getPipeMetrics() : new PipeMetrics();
+        pipeMetrics.registerGauge(GAUGE_THROTTLED, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return terminationToken.reservationCount();
+            }
+        });
+    }
+
+    @Override
+    public void setNextPipe(Pipe<?, ?> nextPipe) {
+        delegate.setNextPipe(nextPipe);
+    }
+
+    @Override
+    public void process(IN input) throws InterruptedException {
+        if(null != leftoverHandler){
+            handOver(input);
+            return;
+        }
+        long waitNanos = rateLimiter.reserve();
+        if(waitNanos <= 0){
+            delegate.process(input);
+        }else{
+            schedule(new DelayedInput(input, null), 1, waitNanos);
+        }
+    }
+
+    /**
+     * 整个批次一次预约inputs.size()个许可，到期后仍以批次的形式交给被修饰的Pipe实例
+     */
+    @Override
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        if(inputs.isEmpty()){
+            return;
+        }
+        if(null != leftoverHandler){
+            for(IN input : inputs){
+                handOver(input);
+            }
+            return;
+        }
+        long waitNanos = rateLimiter.reserve(inputs.size());
+        if(waitNanos <= 0){
+            delegate.processBatch(inputs);
+        }else{
+            schedule(new DelayedInput(null, inputs), inputs.size(), waitNanos);
+        }
+    }
+
+    private void schedule(DelayedInput delayed, int count, long waitNanos) throws InterruptedException {
+        throttledCount.add(count);
+        //等待中的元素过多时提交方等待
+        throttleSlots.acquire();
+        terminationToken.reserve(count);
+        if(!timer.schedule(delayed, waitNanos, TimeUnit.NANOSECONDS)){
+            //已停止（或已放弃），不再延迟
+            delayed.run();
+        }
+    }
+
+    private class DelayedInput implements Runnable {
+        final IN input;
+        final List<IN> inputs;
+
+        DelayedInput(IN input, List<IN> inputs) {
+            this.input = input;
+            this.inputs = inputs;
+        }
+
+        List<IN> all() {
+            return null != inputs ? inputs : Collections.singletonList(input);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if(null != leftoverHandler){
+                    for(IN in : all()){
+                        handOver(in);
+                    }
+                }else if(null != inputs){
+                    delegate.processBatch(inputs);
+                }else{
+                    delegate.process(input);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                throttleSlots.release();
+                terminationToken.release(null != inputs ? inputs.size() : 1);
+            }
+        }
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public Pipe<IN, OUT> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return 因未能立即取得许可而被延迟的元素累计个数
+     */
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    /**
+     * 返回被修饰Pipe实例的运行指标，并附加等待许可的元素个数
+     */
+    @Override
+    public PipeMetrics getPipeMetrics() {
+        return pipeMetrics;
+    }
+
+    @Override
+    public void init(PipeContext pipeCtx) {
+        delegate.init(pipeCtx);
+        pipeCtx.registerEntry(delegate, this);
+        timer.start();
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        boolean drained = terminationToken.awaitDrained(deadlineNanos);
+        if(delegate instanceof DrainablePipe){
+            drained = ((DrainablePipe) delegate).awaitDrained(deadlineNanos) && drained;
+        }
+        return drained;
+    }
+
+    /**
+     * 等待许可的元素立即交给handler，之后再放弃被修饰的Pipe实例
+     */
+    @Override
+    public void abandon(String stageName, LeftoverHandler handler) {
+        this.stageName = stageName;
+        this.leftoverHandler = handler;
+        for(Runnable task : timer.stop()){
+            //leftoverHandler已设置，run只交出元素
+            task.run();
+        }
+        if(delegate instanceof DrainablePipe){
+            ((DrainablePipe) delegate).abandon(stageName, handler);
+        }
+    }
+
+    private void handOver(IN input) {
+        leftoverCount.increment();
+        try {
+            leftoverHandler.onLeftover(stageName, input);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getInFlightCount() {
+        long inFlight = terminationToken.reservationCount();
+        if(delegate instanceof DrainablePipe){
+            inFlight += ((DrainablePipe) delegate).getInFlightCount();
+        }
+        return inFlight;
+    }
+
+    @Override
+    public long getLeftoverCount() {
+        long leftover = leftoverCount.sum();
+        if(delegate instanceof DrainablePipe){
+            leftover += ((DrainablePipe) delegate).getLeftoverCount();
+        }
+        return leftover;
+    }
+
+    /**
+     * 在timeout内等待已延迟的元素交出，之后停止定时与转发；仍未交出的元素被丢弃
+     */
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            terminationToken.awaitDrained(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for(Runnable task : timer.stop()){
+            throttleSlots.release();
+            terminationToken.release(((RateLimitedPipeDecorator<?, ?>.DelayedInput) task).all().size());
+        }
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+}
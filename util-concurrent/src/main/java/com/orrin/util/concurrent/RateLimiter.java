@@ -0,0 +1,132 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶限流器，以GCRA（Generic Cell Rate Algorithm）实现：只维护一个“理论到达时间”，
+ * 每次获取许可只是一次CAS，不需要锁，也不需要后台线程补充令牌
+ * 1. 平均速率为permitsPerSecond，空闲之后至多允许burst个许可的突发；
+ * 2. 指定warmupPeriod时，在启动或空闲超过warmupPeriod之后进入预热：
+ *    速率从permitsPerSecond / 3线性增加到permitsPerSecond，预热期间不允许突发
+ * 速率可在运行期间通过setRate调整，对此后获取的许可生效
+ *
+ * @author orrin on 2026-10-17
+ */
+public class RateLimiter {
+    //预热开始时的许可间隔为稳定间隔的倍数
+    private static final int COLD_FACTOR = 3;
+
+    //下一个许可的理论发放时间（System.nanoTime）
+    private final AtomicLong theoreticalArrival;
+    private volatile long intervalNanos;
+    private final int burst;
+    private final long warmupNanos;
+    private volatile long rampStart;
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param burst
+     *          空闲之后允许的突发许可个数，至少为1
+     * @param warmupPeriod
+     *          预热时长，为0时不预热
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long warmupPeriod, TimeUnit unit) {
+        if(burst <= 0 || warmupPeriod < 0){
+            throw new IllegalArgumentException("require burst > 0 and warmupPeriod >= 0!");
+        }
+        this.intervalNanos = intervalOf(permitsPerSecond);
+        this.burst = burst;
+        this.warmupNanos = unit.toNanos(warmupPeriod);
+        long now = System.nanoTime();
+        this.theoreticalArrival = new AtomicLong(now);
+        this.rampStart = now;
+    }
+
+    public void setRate(double permitsPerSecond) {
+        this.intervalNanos = intervalOf(permitsPerSecond);
+    }
+
+    private static long intervalOf(double permitsPerSecond) {
+        if(!(permitsPerSecond > 0)){
+            throw new IllegalArgumentException("permitsPerSecond should be positive!");
+        }
+        return Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+    }
+
+    public double getRate() {
+        return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    /**
+     * 预约一个许可
+     * @return 须等待多久（纳秒）才能使用该许可，0表示可以立即使用
+     */
+    public long reserve() {
+        return reserve(1, false);
+    }
+
+    /**
+     * 预约permits个许可
+     * @return 须等待多久（纳秒）才能使用这些许可，0表示可以立即使用
+     */
+    public long reserve(int permits) {
+        return reserve(permits, false);
+    }
+
+    /**
+     * @return 能否立即取得一个许可，不能时不预约
+     */
+    public boolean tryAcquire() {
+        return reserve(1, true) == 0;
+    }
+
+    /**
+     * 取得一个许可，必要时等待
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if(waitNanos > 0){
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * @param tryOnly
+     *          为true时只在可以立即使用时预约，否则返回-1
+     */
+    private long reserve(int permits, boolean tryOnly) {
+        for(;;){
+            final long now = System.nanoTime();
+            final long tat = theoreticalArrival.get();
+            if(warmupNanos > 0 && now - tat > warmupNanos){
+                //空闲时间足够长，重新预热
+                rampStart = now;
+            }
+
+            long interval = intervalNanos;
+            long tolerance;
+            long sinceRamp = now - rampStart;
+            if(warmupNanos > 0 && sinceRamp < warmupNanos){
+                interval += (long) ((COLD_FACTOR - 1) * interval * ((double) (warmupNanos - sinceRamp) / warmupNanos));
+                tolerance = 0;
+            }else{
+                tolerance = interval * (burst - 1);
+            }
+
+            //理论到达时间之前tolerance以内的请求都可以立即放行
+            long earliest = tat - tolerance;
+            long waitNanos = now - earliest >= 0 ? 0 : earliest - now;
+            if(tryOnly && waitNanos > 0){
+                return -1;
+            }
+            long next = (now - tat > 0 ? now : tat) + interval * permits;
+            if(theoreticalArrival.compareAndSet(tat, next)){
+                return waitNanos;
+            }
+        }
+    }
+}
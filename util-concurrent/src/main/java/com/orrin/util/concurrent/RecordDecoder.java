@@ -0,0 +1,20 @@
+package com.orrin.util.concurrent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 将MappedFileSource读出的一个记录解码为流水线的输入元素
+ * 可能在多个线程中被调用，实现类须线程安全
+ * @author orrin on 2026-10-17
+ *
+ * @param <T>
+ *     解码后的元素类型
+ */
+public interface RecordDecoder<T> {
+    /**
+     * @param record
+     *          记录内容（不含分隔符），remaining即为记录的字节数；方法返回后buffer不应再被使用
+     * @return 解码后的元素，返回null时跳过该记录
+     */
+    public T decode(ByteBuffer record);
+}
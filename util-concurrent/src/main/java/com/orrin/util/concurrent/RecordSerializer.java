@@ -0,0 +1,28 @@
+package com.orrin.util.concurrent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MappedFileBlockingQueue中记录的序列化方式
+ * 实现类须线程安全（通常无状态即可）
+ * @author orrin on 2026-10-17
+ *
+ * @param <E>
+ *     记录类型
+ */
+public interface RecordSerializer<E> {
+    /**
+     * @return record序列化后的字节数
+     */
+    public int serializedSize(E record);
+
+    /**
+     * 将record写入buffer，buffer的remaining恰好等于serializedSize(record)
+     */
+    public void serialize(E record, ByteBuffer buffer);
+
+    /**
+     * 从buffer中读出一个记录，buffer的remaining恰好等于该记录序列化后的字节数
+     */
+    public E deserialize(ByteBuffer buffer);
+}
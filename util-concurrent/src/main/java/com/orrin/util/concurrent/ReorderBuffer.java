@@ -0,0 +1,311 @@
+package com.orrin.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界重排序缓冲区，使并行处理阶段的输出按输入的先后顺序到达下一个Pipe实例
+ * 每个输入元素在进入处理前通过acquire获得一个序号；被修饰的Pipe实例以该缓冲区作为下一个Pipe，
+ * 其输出先暂存在处理线程本地，处理结束后通过complete按序号放入缓冲区，
+ * 再由某一个线程按序号从小到大依次交给真正的下一个Pipe实例
+ * 最多允许capacity个元素已获得序号但其输出尚未交出，超出时acquire阻塞（队首阻塞），
+ * 因此一个很慢的元素至多使capacity个后续元素的输出滞留在缓冲区中
+ * 被修饰的Pipe实例须在处理线程中同步地产生输出，异步产生的输出不经过重排序直接交给下一个Pipe实例
+ * 每个实例仅供一个处理阶段使用
+ *
+ * @author orrin on 2026-10-17
+ */
+public class ReorderBuffer implements Pipe<Object, Object> {
+    private final int capacity;
+    //序号对应的输出，null表示尚未处理完成
+    private final Object[] slots;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    //保证同一时刻只有一个线程在按序交出输出
+    private final ReentrantLock emitLock = new ReentrantLock();
+
+    //下一个待分配的序号
+    private long nextSequence;
+    //下一个待交出的序号
+    private long nextToEmit;
+    //已处理完成的元素个数
+    private long completedCount;
+
+    //处理线程当前元素的输出
+    private final ThreadLocal<List<Object>> captured = new ThreadLocal<List<Object>>();
+    private volatile Pipe<?, ?> nextPipe;
+
+    //acquire因缓冲区已满而等待的次数及总时长
+    private final LongAdder stallCount = new LongAdder();
+    private final LongAdder stallNanos = new LongAdder();
+
+    public ReorderBuffer(int capacity) {
+        if(capacity <= 0){
+            throw new IllegalArgumentException("capacity should be positive!");
+        }
+        this.capacity = capacity;
+        this.slots = new Object[capacity];
+    }
+
+    /**
+     * 为下一个输入元素分配序号，缓冲区已满时等待队首元素的输出交出
+     * @return 序号
+     * @throws InterruptedException
+     */
+    public long acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if(nextSequence - nextToEmit >= capacity){
+                final long start = System.nanoTime();
+                stallCount.increment();
+                try {
+                    while(nextSequence - nextToEmit >= capacity){
+                        notFull.await();
+                    }
+                } finally {
+                    stallNanos.add(System.nanoTime() - start);
+                }
+            }
+            return nextSequence++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 与acquire相同，但等待期间不响应中断，用于输入元素已经从工作队列中取出的场景
+     */
+    public long acquireUninterruptibly() {
+        lock.lock();
+        try {
+            if(nextSequence - nextToEmit >= capacity){
+                final long start = System.nanoTime();
+                stallCount.increment();
+                while(nextSequence - nextToEmit >= capacity){
+                    notFull.awaitUninterruptibly();
+                }
+                stallNanos.add(System.nanoTime() - start);
+            }
+            return nextSequence++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在处理线程中开始收集当前元素的输出
+     */
+    public void begin() {
+        captured.set(new ArrayList<Object>(1));
+    }
+
+    /**
+     * 当前元素处理结束（无论成功与否），将begin之后收集到的输出放入序号对应的位置，并交出所有已就绪的输出
+     * @param sequence
+     *          acquire返回的序号
+     */
+    public void complete(long sequence) {
+        List<Object> outputs = captured.get();
+        captured.remove();
+        fill(sequence, null == outputs ? new ArrayList<Object>(0) : outputs);
+    }
+
+    /**
+     * 放弃一个已分配的序号（如任务提交失败），使后续元素的输出不会因它而滞留
+     */
+    public void skip(long sequence) {
+        fill(sequence, new ArrayList<Object>(0));
+    }
+
+    private void fill(long sequence, List<Object> outputs) {
+        lock.lock();
+        try {
+            slots[(int) (sequence % capacity)] = outputs;
+            completedCount++;
+        } finally {
+            lock.unlock();
+        }
+        emitReady();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emitReady() {
+        while(true){
+            if(!emitLock.tryLock()){
+                //正在交出输出的线程会在释放emitLock后再次检查队首
+                return;
+            }
+            try {
+                for(;;){
+                    List<Object> outputs;
+                    lock.lock();
+                    try {
+                        int index = (int) (nextToEmit % capacity);
+                        outputs = (List<Object>) slots[index];
+                        if(null == outputs){
+                            break;
+                        }
+                        slots[index] = null;
+                        nextToEmit++;
+                        notFull.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    forward(outputs);
+                }
+            } finally {
+                emitLock.unlock();
+            }
+
+            if(!isHeadReady()){
+                return;
+            }
+        }
+    }
+
+    private boolean isHeadReady() {
+        lock.lock();
+        try {
+            return null != slots[(int) (nextToEmit % capacity)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forward(List<Object> outputs) {
+        Pipe<Object, ?> next = asNext();
+        if(null == next){
+            return;
+        }
+        for(Object output : outputs){
+            try {
+                next.process(output);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 被修饰的Pipe实例的输出，在处理线程中暂存，否则直接交给下一个Pipe实例
+     */
+    @Override
+    public void process(Object output) throws InterruptedException {
+        List<Object> outputs = captured.get();
+        if(null != outputs){
+            outputs.add(output);
+            return;
+        }
+
+        Pipe<Object, ?> next = asNext();
+        if(null != next){
+            next.process(output);
+        }
+    }
+
+    @Override
+    public void processBatch(List<Object> outputs) throws InterruptedException {
+        List<Object> current = captured.get();
+        if(null != current){
+            current.addAll(outputs);
+            return;
+        }
+
+        Pipe<Object, ?> next = asNext();
+        if(null != next){
+            next.processBatch(outputs);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Pipe<Object, ?> asNext() {
+        return (Pipe<Object, ?>) nextPipe;
+    }
+
+    @Override
+    public void setNextPipe(Pipe<?, ?> nextPipe) {
+        this.nextPipe = nextPipe;
+    }
+
+    @Override
+    public void init(PipeContext pipeCtx) {
+        //什么也不做
+    }
+
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        //什么也不做
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 已分配序号但输出尚未交出的元素个数
+     */
+    public long getOccupancy() {
+        lock.lock();
+        try {
+            return nextSequence - nextToEmit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 已处理完成、但因前面的元素尚未完成而滞留在缓冲区中的元素个数
+     */
+    public long getHeadOfLineWaiting() {
+        lock.lock();
+        try {
+            return completedCount - nextToEmit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getStallCount() {
+        return stallCount.sum();
+    }
+
+    public long getStallNanos() {
+        return stallNanos.sum();
+    }
+
+    /**
+     * 将缓冲区占用及队首阻塞情况注册为处理阶段的Gauge
+     */
+    public void registerGauges(PipeMetrics pipeMetrics) {
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_REORDER_OCCUPANCY, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return getOccupancy();
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_HEAD_OF_LINE_WAITING, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return getHeadOfLineWaiting();
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_HEAD_OF_LINE_STALLS, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return getStallCount();
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_HEAD_OF_LINE_STALL_MILLIS, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return TimeUnit.NANOSECONDS.toMillis(getStallNanos());
+            }
+        });
+    }
+}
@@ -0,0 +1,321 @@
+package com.orrin.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带重试、死信队列与熔断的PipeContext
+ * 1. 重试：按抛出异常的Pipe实例（PipeException.sourcePipe）配置RetryPolicy，出错的元素在退避时间之后
+ *    重新交给该Pipe实例所在阶段的进入点（见registerEntry），仍经过修饰器的工作线程、分区、准入控制与限流；
+ *    没有修饰器登记的Pipe实例（如被融合的阶段）直接重新处理。退避由时间轮定时，到期后由专门的重试线程交给进入点；
+ * 2. 死信：重试耗尽、未配置重试或熔断期间出错的元素连同其异常放入有界的死信队列，队列已满时丢弃最早的死信；
+ * 3. 熔断：按Pipe实例配置CircuitBreaker，错误率过高时暂停该阶段的重试，避免故障期间的重试进一步加重负载
+ * handleError只做计数、入队等非阻塞操作，大量出错时也不会拖慢正常元素的处理
+ * 重试次数按(Pipe实例, 输入元素)的同一性跟踪，重试时须以原输入元素实例构造PipeException；
+ * 只有同步抛出异常的Pipe实例可以重试，AbstractAsyncPipe抛出的异常与NonRetryablePipeException直接进入死信队列
+ * @author orrin on 2026-10-17
+ */
+public class ResilientPipeContext implements PipeContext {
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+    //重试成功的元素不会再经过handleError，其跟踪记录超过该时长后清除
+    private static final long RETRY_TRACKING_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final BlockingQueue<DeadLetter> deadLetters;
+    private final ThreadPoolExecutor retryExecutor;
+    private final TimerWheel timer;
+    private final Map<Pipe<?, ?>, RetryPolicy> retryPolicies = new ConcurrentHashMap<Pipe<?, ?>, RetryPolicy>();
+    private final Map<Pipe<?, ?>, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<Pipe<?, ?>, CircuitBreaker>();
+    private volatile RetryPolicy defaultRetryPolicy = RetryPolicy.NONE;
+    //被修饰的Pipe实例 -> 修饰它的Pipe实例
+    private final Map<Pipe<?, ?>, Pipe<?, ?>> entries = new ConcurrentHashMap<Pipe<?, ?>, Pipe<?, ?>>();
+    //已交给进入点的重试，重试由进入点交给其他线程执行，不能按线程跟踪
+    private final Map<RetryKey, RetryTask> activeRetries = new ConcurrentHashMap<RetryKey, RetryTask>();
+    private volatile long lastPurgeNanos = System.nanoTime();
+    private volatile boolean shutdown = false;
+
+    private final LongAdder errorCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder shortCircuitedCount = new LongAdder();
+    private final LongAdder deadLetterCount = new LongAdder();
+    private final LongAdder droppedDeadLetterCount = new LongAdder();
+
+    public ResilientPipeContext(int deadLetterCapacity) {
+        this(deadLetterCapacity, 1);
+    }
+
+    /**
+     * @param deadLetterCapacity
+     *          死信队列的容量
+     * @param retryThreads
+     *          执行重试的线程数
+     */
+    public ResilientPipeContext(int deadLetterCapacity, int retryThreads) {
+        this.deadLetters = new ArrayBlockingQueue<DeadLetter>(deadLetterCapacity);
+        this.retryExecutor = new ThreadPoolExecutor(retryThreads, retryThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadIndex = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ResilientPipeContext-Retry-" + threadIndex.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.timer = new TimerWheel("ResilientPipeContext-Timer", TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE,
+                retryExecutor);
+        timer.start();
+    }
+
+    public void setRetryPolicy(Pipe<?, ?> stage, RetryPolicy retryPolicy) {
+        retryPolicies.put(stage, retryPolicy);
+    }
+
+    /**
+     * 未单独配置RetryPolicy的Pipe实例使用的重试策略，默认不重试
+     */
+    public void setDefaultRetryPolicy(RetryPolicy retryPolicy) {
+        this.defaultRetryPolicy = retryPolicy;
+    }
+
+    public void setCircuitBreaker(Pipe<?, ?> stage, CircuitBreaker circuitBreaker) {
+        circuitBreakers.put(stage, circuitBreaker);
+    }
+
+    @Override
+    public void registerEntry(Pipe<?, ?> stage, Pipe<?, ?> entry) {
+        entries.put(stage, entry);
+    }
+
+    @Override
+    public void handleError(PipeException exp) {
+        errorCount.increment();
+        int retries = 0;
+        if(null != exp.input){
+            RetryTask current = activeRetries.remove(new RetryKey(exp.sourcePipe, exp.input));
+            if(null != current){
+                retries = current.attempt;
+            }
+        }
+
+        CircuitBreaker breaker = circuitBreakers.get(exp.sourcePipe);
+        if(null != breaker){
+            long itemsIn = exp.sourcePipe instanceof MeasurablePipe
+                    ? ((MeasurablePipe) exp.sourcePipe).getPipeMetrics().getItemsIn() : -1;
+            if(!breaker.recordError(itemsIn)){
+                shortCircuitedCount.increment();
+                deadLetter(exp, retries);
+                return;
+            }
+        }
+
+        RetryPolicy policy = retryPolicies.get(exp.sourcePipe);
+        if(null == policy){
+            policy = defaultRetryPolicy;
+        }
+        if(shutdown || retries >= policy.getMaxRetries() || null == exp.input
+                || exp.sourcePipe instanceof AbstractAsyncPipe || exp instanceof NonRetryablePipeException){
+            deadLetter(exp, retries);
+            return;
+        }
+
+        int attempt = retries + 1;
+        if(timer.schedule(new RetryTask(exp, attempt), policy.backoffNanos(attempt), TimeUnit.NANOSECONDS)){
+            retryCount.increment();
+        }else{
+            deadLetter(exp, retries);
+        }
+    }
+
+    /**
+     * @return stage所在阶段的进入点，即最外层的修饰器
+     */
+    private Pipe<?, ?> entryOf(Pipe<?, ?> stage) {
+        Pipe<?, ?> entry = stage;
+        Pipe<?, ?> outer;
+        while(null != (outer = entries.get(entry)) && outer != entry){
+            entry = outer;
+        }
+        return entry;
+    }
+
+    private void purgeRetries(long now) {
+        lastPurgeNanos = now;
+        for(Map.Entry<RetryKey, RetryTask> e : activeRetries.entrySet()){
+            if(now - e.getValue().dispatchedNanos > RETRY_TRACKING_NANOS){
+                activeRetries.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private void deadLetter(PipeException exp, int retries) {
+        DeadLetter deadLetter = new DeadLetter(exp, retries, System.currentTimeMillis());
+        deadLetterCount.increment();
+        //队列已满时丢弃最早的死信
+        while(!deadLetters.offer(deadLetter)){
+            if(null != deadLetters.poll()){
+                droppedDeadLetterCount.increment();
+            }
+        }
+    }
+
+    /**
+     * @return 最早的一个死信，没有时返回null
+     */
+    public DeadLetter pollDeadLetter() {
+        return deadLetters.poll();
+    }
+
+    /**
+     * 取出死信队列中的所有死信
+     * @return 取出的个数
+     */
+    public int drainDeadLetters(Collection<? super DeadLetter> to) {
+        return deadLetters.drainTo(to);
+    }
+
+    public int getDeadLetterQueueSize() {
+        return deadLetters.size();
+    }
+
+    /**
+     * @return handleError被调用的次数
+     */
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    /**
+     * @return 已安排的重试次数
+     */
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    /**
+     * @return 因熔断而未重试的次数
+     */
+    public long getShortCircuitedCount() {
+        return shortCircuitedCount.sum();
+    }
+
+    /**
+     * @return 进入死信队列的累计个数，包括此后因队列已满而被丢弃的
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.sum();
+    }
+
+    /**
+     * @return 因死信队列已满而被丢弃的死信个数
+     */
+    public long getDroppedDeadLetterCount() {
+        return droppedDeadLetterCount.sum();
+    }
+
+    /**
+     * @return 等待退避到期或等待重试线程执行的重试个数
+     */
+    public long getPendingRetryCount() {
+        return timer.getPendingCount() + retryExecutor.getQueue().size();
+    }
+
+    /**
+     * 停止重试：尚未执行的重试直接进入死信队列，正在执行的重试在timeout内完成
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        shutdown = true;
+        List<Runnable> unexecuted = new ArrayList<Runnable>(timer.stop());
+        retryExecutor.shutdown();
+        try {
+            if(!retryExecutor.awaitTermination(timeout, unit)){
+                unexecuted.addAll(retryExecutor.shutdownNow());
+            }
+        } catch (InterruptedException e) {
+            unexecuted.addAll(retryExecutor.shutdownNow());
+            Thread.currentThread().interrupt();
+        }
+        for(Runnable task : unexecuted){
+            if(task instanceof RetryTask){
+                RetryTask retry = (RetryTask) task;
+                deadLetter(retry.cause, retry.attempt - 1);
+            }
+        }
+        activeRetries.clear();
+    }
+
+    private class RetryTask implements Runnable {
+        final PipeException cause;
+        //第几次重试
+        final int attempt;
+        volatile long dispatchedNanos;
+
+        RetryTask(PipeException cause, int attempt) {
+            this.cause = cause;
+            this.attempt = attempt;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void run() {
+            if(shutdown){
+                deadLetter(cause, attempt - 1);
+                return;
+            }
+            long now = System.nanoTime();
+            if(now - lastPurgeNanos > PURGE_INTERVAL_NANOS){
+                purgeRetries(now);
+            }
+            RetryKey key = new RetryKey(cause.sourcePipe, cause.input);
+            dispatchedNanos = now;
+            activeRetries.put(key, this);
+            try {
+                ((Pipe<Object, ?>) entryOf(cause.sourcePipe)).process(cause.input);
+            } catch (InterruptedException e) {
+                activeRetries.remove(key, this);
+                deadLetter(cause, attempt - 1);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 按同一性比较的(Pipe实例, 输入元素)
+     */
+    private static final class RetryKey {
+        final Pipe<?, ?> stage;
+        final Object input;
+
+        RetryKey(Pipe<?, ?> stage, Object input) {
+            this.stage = stage;
+            this.input = input;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof RetryKey)){
+                return false;
+            }
+            RetryKey other = (RetryKey) obj;
+            return stage == other.stage && input == other.input;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(stage) + System.identityHashCode(input);
+        }
+    }
+}
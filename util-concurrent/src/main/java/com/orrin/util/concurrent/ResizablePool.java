@@ -0,0 +1,38 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 工作者线程个数可在运行期间调整的线程池或处理阶段，供AdaptivePoolSizer观测与调整
+ * @author orrin on 2026-10-17
+ */
+public interface ResizablePool {
+    /**
+     * @return 目标工作者线程个数
+     */
+    public int getWorkerCount();
+
+    /**
+     * 调整目标工作者线程个数。增加时立即启动新线程，减少时多余的线程在处理完当前任务后退出
+     * @param workerCount
+     */
+    public void setWorkerCount(int workerCount);
+
+    /**
+     * @return 正在执行任务的工作者线程个数
+     */
+    public int getActiveWorkerCount();
+
+    /**
+     * @return 累计执行结束的任务个数
+     */
+    public long getCompletedTaskCount();
+
+    /**
+     * @return 排队等待执行的任务个数
+     */
+    public int getQueueSize();
+
+    /**
+     * @return 累计因没有空闲工作者线程而未能立即交付的任务个数（如提交方阻塞或被CallerRunsPolicy执行）
+     */
+    public long getSaturationCount();
+}
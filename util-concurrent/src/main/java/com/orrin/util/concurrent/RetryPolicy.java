@@ -0,0 +1,54 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 处理阶段出错时的重试策略：至多重试maxRetries次，第n次重试前等待initialBackoff * 2^(n-1)，但不超过maxBackoff
+ * @author orrin on 2026-10-17
+ */
+public final class RetryPolicy {
+    /**
+     * 不重试
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+    private final int maxRetries;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private RetryPolicy(int maxRetries, long initialBackoffNanos, long maxBackoffNanos) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+    }
+
+    public static RetryPolicy exponential(int maxRetries, long initialBackoff, long maxBackoff, TimeUnit unit) {
+        if(maxRetries < 0 || initialBackoff < 0 || maxBackoff < initialBackoff){
+            throw new IllegalArgumentException("require maxRetries >= 0 and 0 <= initialBackoff <= maxBackoff!");
+        }
+        return new RetryPolicy(maxRetries, unit.toNanos(initialBackoff), unit.toNanos(maxBackoff));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param attempt
+     *          第几次重试，从1开始
+     * @return 该次重试前的等待时长（纳秒）
+     */
+    public long backoffNanos(int attempt) {
+        long backoff = initialBackoffNanos;
+        for(int i=1; i<attempt && backoff < maxBackoffNanos; i++){
+            backoff <<= 1;
+        }
+        return Math.min(backoff, maxBackoffNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{maxRetries=" + maxRetries + ", initialBackoffNanos=" + initialBackoffNanos
+                + ", maxBackoffNanos=" + maxBackoffNanos + "}";
+    }
+}
@@ -0,0 +1,255 @@
+package com.orrin.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 基于预分配环形数组的有界无锁阻塞队列，支持多生产者多消费者
+ * 每个槽位附带一个序号，生产者和消费者仅通过CAS竞争头尾指针，不使用锁，
+ * 队列满或空时按照指定的WaitStrategy等待，而不是像SynchronousQueue那样每次都park/unpark线程
+ * 容量会被向上取整为2的幂次
+ *
+ * @author orrin on 2026-10-17
+ *
+ * @param <E>
+ *     元素类型
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    //槽位序号：等于pos表示可写入，等于pos+1表示可读取
+    private final AtomicLongArray sequences;
+
+    //下一个读取位置
+    private final PaddedAtomicLong head = new PaddedAtomicLong();
+    //下一个写入位置
+    private final PaddedAtomicLong tail = new PaddedAtomicLong();
+
+    private final WaitStrategy waitStrategy;
+
+    public RingBufferBlockingQueue(int capacity) {
+        this(capacity, new WaitStrategy.ParkingBackoff());
+    }
+
+    public RingBufferBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        if(capacity <= 0 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("capacity should be in (0, 2^30]!");
+        }
+        if(null == waitStrategy){
+            throw new NullPointerException("waitStrategy");
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new AtomicReferenceArray<E>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for(int i=0; i<this.capacity; i++){
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if(null == e){
+            throw new NullPointerException();
+        }
+
+        long pos = tail.get();
+        for(;;){
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if(0 == diff){
+                if(tail.compareAndSet(pos, pos + 1)){
+                    buffer.lazySet(index, e);
+                    //发布元素，lazySet保证之前对槽位的写入对读取方可见
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            }else if(diff < 0){
+                //队列已满
+                return false;
+            }else{
+                pos = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        long pos = head.get();
+        for(;;){
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if(0 == diff){
+                if(head.compareAndSet(pos, pos + 1)){
+                    E e = buffer.get(index);
+                    buffer.lazySet(index, null);
+                    //将槽位交还给下一轮的生产者
+                    sequences.lazySet(index, pos + capacity);
+                    return e;
+                }
+                pos = head.get();
+            }else if(diff < 0){
+                //队列为空
+                return null;
+            }else{
+                pos = head.get();
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        for(;;){
+            long pos = head.get();
+            int index = (int) pos & mask;
+            if(sequences.get(index) != pos + 1){
+                return null;
+            }
+            E e = buffer.get(index);
+            if(null != e && head.get() == pos){
+                return e;
+            }
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        int counter = 0;
+        while(!offer(e)){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(counter++);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = 0;
+        while(!offer(e)){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            if(deadline - System.nanoTime() <= 0){
+                return false;
+            }
+            waitStrategy.idle(counter++);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        int counter = 0;
+        E e;
+        while(null == (e = poll())){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(counter++);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = 0;
+        E e;
+        while(null == (e = poll())){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            if(deadline - System.nanoTime() <= 0){
+                return null;
+            }
+            waitStrategy.idle(counter++);
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        long h = head.get();
+        long size = tail.get() - h;
+        if(size < 0){
+            return 0;
+        }
+        return size > capacity ? capacity : (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if(c == this){
+            throw new IllegalArgumentException();
+        }
+
+        int n = 0;
+        E e;
+        while(n < maxElements && null != (e = poll())){
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 返回队列当前内容的快照迭代器，不支持remove
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<E>();
+        long end = tail.get();
+        for(long pos = head.get(); pos < end; pos++){
+            int index = (int) pos & mask;
+            E e = buffer.get(index);
+            if(sequences.get(index) == pos + 1 && null != e){
+                snapshot.add(e);
+            }
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * 通过填充字段避免头尾指针与其他热点数据位于同一缓存行（伪共享）
+     */
+    @SuppressWarnings("unused")
+    private static class PaddedAtomicLong extends AtomicLong {
+        private static final long serialVersionUID = -3415778863941386253L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,192 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 串行线程封闭（Serial Thread Confinement）模式Serializer参与者的无分配实现
+ * 与AbstractSerializer不同，任务实例预先分配在环形数组的各个槽位中并被重复使用：
+ * 提交方通过TaskTranslator将参数写入槽位中的任务实例，处理结果通过TaskCompletion回调
+ * （通常为可重复使用的CompletionHandle）返回，因此提交与处理的整个过程不产生对象分配
+ * （不再有可变参数数组、Callable、FutureTask与队列节点）
+ * 环形数组的容量会被向上取整为2的幂次；已满时提交方按照WaitStrategy等待，工作者线程在没有任务时同样如此
+ * 槽位中的任务实例在处理结束后仍持有其内容直至被下一次提交覆盖
+ * @author orrin on 2026-10-17
+ *
+ * @param <T>
+ *      槽位中任务的类型，须为可变对象
+ * @param <V>
+ *      任务处理结果的类型
+ */
+public class RingBufferSerializer<T, V> {
+    //translator失败时发布的槽位以此标记，工作者线程跳过该槽位，既不处理也不回调
+    private static final Object SKIPPED = new Object();
+
+    private final int capacity;
+    private final int mask;
+    private final T[] tasks;
+    private final Object[] completions;
+    //槽位序号：等于pos表示可写入，等于pos+1表示可处理
+    private final AtomicLongArray sequences;
+    //下一个写入位置
+    private final AtomicLong tail = new AtomicLong();
+
+    private final TaskProcssor<T, V> taskProcssor;
+    private final WaitStrategy waitStrategy;
+    private final Worker workerThread;
+
+    public RingBufferSerializer(int capacity, Supplier<T> taskFactory, TaskProcssor<T, V> taskProcssor) {
+        this(capacity, taskFactory, taskProcssor, new WaitStrategy.ParkingBackoff());
+    }
+
+    @SuppressWarnings("unchecked")
+    public RingBufferSerializer(int capacity, Supplier<T> taskFactory, TaskProcssor<T, V> taskProcssor,
+                                WaitStrategy waitStrategy) {
+        if(capacity <= 0 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("capacity should be in (0, 2^30]!");
+        }
+        if(null == waitStrategy){
+            throw new NullPointerException("waitStrategy");
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.tasks = (T[]) new Object[this.capacity];
+        this.completions = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for(int i=0; i<this.capacity; i++){
+            tasks[i] = taskFactory.get();
+            sequences.set(i, i);
+        }
+        this.taskProcssor = taskProcssor;
+        this.waitStrategy = waitStrategy;
+        this.workerThread = new Worker();
+    }
+
+    /**
+     * 提交任务，环形数组已满时等待
+     * @param translator
+     *          将arg写入槽位中的任务实例
+     * @param arg
+     *          提交方参数
+     * @param completion
+     *          任务处理结束时在工作者线程中回调
+     * @throws InterruptedException
+     */
+    public <A> void submit(TaskTranslator<T, A> translator, A arg, TaskCompletion<? super V> completion)
+            throws InterruptedException {
+        int counter = 0;
+        while(!trySubmit(translator, arg, completion)){
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(counter++);
+        }
+    }
+
+    /**
+     * 提交任务，环形数组已满时立即返回false
+     */
+    public <A> boolean trySubmit(TaskTranslator<T, A> translator, A arg, TaskCompletion<? super V> completion) {
+        if(null == completion){
+            throw new NullPointerException("completion");
+        }
+
+        long pos = tail.get();
+        for(;;){
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if(0 == diff){
+                if(tail.compareAndSet(pos, pos + 1)){
+                    break;
+                }
+                pos = tail.get();
+            }else if(diff < 0){
+                //环形数组已满
+                return false;
+            }else{
+                pos = tail.get();
+            }
+        }
+
+        int index = (int) pos & mask;
+        boolean translated = false;
+        try {
+            translator.translateTo(tasks[index], arg);
+            translated = true;
+        } finally {
+            //槽位已被占用，即使translator失败也须发布，否则工作者线程将永远等待该槽位
+            completions[index] = translated ? completion : SKIPPED;
+            workerThread.terminationToken.reserve();
+            //发布槽位，lazySet保证之前对槽位的写入对工作者线程可见
+            sequences.lazySet(index, pos + 1);
+        }
+        return true;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 初始化该类对外暴露的服务
+     */
+    public void init(){
+        workerThread.start();
+    }
+
+    /**
+     * 停止该类对外暴露的服务，已提交的任务处理完毕后工作者线程退出
+     */
+    public void shutdown(){
+        workerThread.terminate();
+    }
+
+    /**
+     * 唯一的消费者，依次处理各个槽位中的任务
+     */
+    private class Worker extends AbstractTerminatableThread {
+        //下一个处理位置，仅由工作者线程访问
+        private long head;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void doRun() throws Exception {
+            final long pos = head;
+            final int index = (int) pos & mask;
+            int counter = 0;
+            while(sequences.get(index) != pos + 1){
+                if(Thread.interrupted()){
+                    throw new InterruptedException();
+                }
+                waitStrategy.idle(counter++);
+            }
+
+            Object completion = completions[index];
+            completions[index] = null;
+            V result = null;
+            Throwable failure = null;
+            if(SKIPPED != completion){
+                try {
+                    result = taskProcssor.doProcess(tasks[index]);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+            }
+
+            head = pos + 1;
+            //将槽位交还给下一轮的提交方
+            sequences.lazySet(index, pos + capacity);
+            terminationToken.release();
+            if(SKIPPED != completion){
+                try {
+                    ((TaskCompletion<? super V>) completion).onComplete(result, failure);
+                } catch (Throwable e) {
+                    //回调失败不能使唯一的工作者线程退出
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
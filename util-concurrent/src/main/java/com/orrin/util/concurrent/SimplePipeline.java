@@ -1,13 +1,29 @@
 package com.orrin.util.concurrent;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
+ * init时对处理阶段进行融合：开销为StageCost.CHEAP的同步处理阶段不再经过队列与线程交接，
+ * 而是与上一阶段融合为一个FusedPipe，在上一阶段的线程中执行（位于最前面的则在提交元素的线程中执行）；
+ * 开销为BLOCKING、HEAVY或未声明开销的阶段保持原样。融合后的物理执行计划可通过getPhysicalPlan查看
+ * 被融合的阶段改由上一阶段的线程执行，因此其修饰器限定的线程个数（如只有一个工作者线程的WorkThreadPipeDecorator）
+ * 少于上一阶段的线程个数时不做融合，以免破坏该阶段的线程封闭
+ * 启用了批量处理、准入控制（maxInFlight）或以AcknowledgingQueue为工作队列的修饰器同样不做融合，以免其行为被去掉
+ * 可通过drainAndShutdown在一个总的期限内逐个阶段排空并停止流水线，未能处理的元素交给LeftoverHandler
  * @author orrin on 2018-11-23
  *
  * @param <IN>
@@ -18,6 +34,18 @@ import java.util.concurrent.TimeUnit;
 public class SimplePipeline<IN, OUT> extends AbsractPipe<IN, OUT> implements PipeLine<IN, OUT> {
     private final Queue<Pipe<?, ?>> pipes = new LinkedList<Pipe<?, ?>>();
     private final ExecutorService helperService;
+    private volatile ObjectName metricsObjectName;
+
+    //开始排空后，新提交的元素交给该handler而不再进入流水线
+    private volatile LeftoverHandler leftoverHandler;
+    private volatile String entryStageName;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    //通过addPipe(pipe, cost)声明的开销
+    private final Map<Pipe<?, ?>, StageCost> declaredCosts = new IdentityHashMap<Pipe<?, ?>, StageCost>();
+    //融合后的第一个物理阶段，init之前为null
+    private volatile Pipe<?, ?> headPipe;
+    private volatile List<PhysicalStage> physicalPlan = Collections.emptyList();
 
     public SimplePipeline() {
         //创建固定线程数为1的线程池，整型的最大数的LinkedBlockingQueue的缓存队列
@@ -36,15 +64,92 @@ public class SimplePipeline<IN, OUT> extends AbsractPipe<IN, OUT> implements Pip
         this.helperService = helperService;
     }
 
+    /**
+     * 依次停止各个处理阶段，所有阶段共用一个总的期限timeout
+     */
     @Override
     public void shutdown(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
         Pipe<?,?> pipe;
 
         while(null != (pipe = pipes.poll())){
-            pipe.shutdown(timeout, unit);
+            pipe.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
         }
 
         helperService.shutdown();
+        JmxSupport.unregister(metricsObjectName);
+    }
+
+    /**
+     * 排空并停止流水线，所有阶段共用一个总的期限timeout：
+     * 1. 停止接收新的元素，此后提交给流水线的元素直接交给handler；
+     * 2. 按先后顺序等待各个阶段处理完已接收的元素，期限已过的阶段不再等待，
+     *    其尚未开始处理的元素交给handler；已排空的阶段同样不再处理此后到达的元素
+     *    （如上游被放弃时仍在处理中的元素的输出），而是交给handler；
+     * 3. 在剩余的时间内依次停止各个阶段
+     * 未实现DrainablePipe的阶段视为同步处理，没有需要等待的元素
+     * @param handler
+     *          接收未能处理的元素
+     * @return 各个阶段的排空结果，顺序与处理阶段的先后顺序一致。停止接收后被拒绝的元素计入第一个阶段
+     */
+    public List<DrainReport> drainAndShutdown(long timeout, TimeUnit unit, LeftoverHandler handler) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Pipe<?, ?>> stages = new ArrayList<Pipe<?, ?>>(pipes);
+        if(!stages.isEmpty()){
+            this.entryStageName = stageName(0, stages.get(0));
+        }
+        this.leftoverHandler = handler;
+
+        boolean[] drained = new boolean[stages.size()];
+        long[] inFlight = new long[stages.size()];
+        long[] waitedMillis = new long[stages.size()];
+        boolean interrupted = false;
+        for(int i=0; i<stages.size(); i++){
+            Pipe<?, ?> pipe = stages.get(i);
+            if(!(pipe instanceof DrainablePipe)){
+                drained[i] = true;
+                continue;
+            }
+
+            DrainablePipe stage = (DrainablePipe) pipe;
+            final long start = System.nanoTime();
+            if(!interrupted){
+                try {
+                    drained[i] = stage.awaitDrained(deadline);
+                } catch (InterruptedException e) {
+                    //不再等待，其余阶段直接放弃
+                    interrupted = true;
+                }
+            }
+            waitedMillis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            stage.abandon(stageName(i, pipe), handler);
+            inFlight[i] = stage.getInFlightCount();
+        }
+
+        shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+
+        List<DrainReport> reports = new ArrayList<DrainReport>(stages.size());
+        for(int i=0; i<stages.size(); i++){
+            Pipe<?, ?> pipe = stages.get(i);
+            long leftover = pipe instanceof DrainablePipe ? ((DrainablePipe) pipe).getLeftoverCount() : 0;
+            if(0 == i){
+                leftover += rejectedCount.sum();
+            }
+            reports.add(new DrainReport(stageName(i, pipe), drained[i], leftover, inFlight[i], waitedMillis[i]));
+        }
+        return reports;
+    }
+
+    private void reject(IN input) {
+        rejectedCount.increment();
+        try {
+            leftoverHandler.onLeftover(entryStageName, input);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -52,6 +157,19 @@ public class SimplePipeline<IN, OUT> extends AbsractPipe<IN, OUT> implements Pip
         pipes.add(pipe);
     }
 
+    /**
+     * 添加处理阶段并声明其开销，优先于pipe（或被修饰的Pipe实例）实现的StageCostAware
+     * @param pipe
+     * @param cost
+     *          为CHEAP且pipe为同步处理的AbsractPipe（或其WorkThreadPipeDecorator、ThreadPoolPipeDecorator修饰）时，
+     *          init时将与上一阶段融合；修饰器限定的线程个数少于上一阶段的线程个数，
+     *          或修饰器启用了批量处理、准入控制、持久化的工作队列时除外
+     */
+    public void addPipe(Pipe<?, ?> pipe, StageCost cost) {
+        declaredCosts.put(pipe, cost);
+        pipes.add(pipe);
+    }
+
     @Override
     public OUT doProcess(IN input) throws PipeException {
         // TODO Auto-generated method stub
@@ -60,26 +178,80 @@ public class SimplePipeline<IN, OUT> extends AbsractPipe<IN, OUT> implements Pip
 
     @Override
     public void process(IN input) throws InterruptedException {
+        if(null != leftoverHandler){
+            reject(input);
+            return;
+        }
+
         @SuppressWarnings("unchecked")
-        Pipe<IN, ?> firstPipe = (Pipe<IN, ?>) pipes.peek();
+        Pipe<IN, ?> firstPipe = (Pipe<IN, ?>) firstPipe();
 
         firstPipe.process(input);
     }
 
+    @Override
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        if(null != leftoverHandler){
+            for(IN input : inputs){
+                reject(input);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Pipe<IN, ?> firstPipe = (Pipe<IN, ?>) firstPipe();
+
+        firstPipe.processBatch(inputs);
+    }
+
+    private Pipe<?, ?> firstPipe() {
+        Pipe<?, ?> head = headPipe;
+        return null != head ? head : pipes.peek();
+    }
+
     @Override
     public void init(PipeContext pipeCtx) {
-        LinkedList<Pipe<?, ?>> pipesList = (LinkedList<Pipe<?, ?>>) pipes;
+        final List<Pipe<?, ?>> physicalPipes = new ArrayList<Pipe<?, ?>>();
+        List<PhysicalStage> plan = new ArrayList<PhysicalStage>();
+        //待融合的连续阶段
+        List<AbsractPipe<?, ?>> fusing = new ArrayList<AbsractPipe<?, ?>>();
+        List<String> fusingNames = new ArrayList<String>();
+
+        int index = 0;
+        //执行当前阶段的线程个数上限，最前面的阶段在任意个提交元素的线程中执行
+        int upstreamConcurrency = Integer.MAX_VALUE;
+        for(Pipe<?, ?> pipe: pipes){
+            String name = stageName(index++, pipe);
+            AbsractPipe<?, ?> fusible = fusibleTarget(pipe, upstreamConcurrency);
+            if(null != fusible){
+                fusing.add(fusible);
+                fusingNames.add(name);
+                continue;
+            }
+            fuse(fusing, fusingNames, physicalPipes, plan);
+            physicalPipes.add(pipe);
+            boolean handOff = pipe != unwrap(pipe) || pipe instanceof AbstractAsyncPipe;
+            plan.add(new PhysicalStage(name, handOff, Collections.singletonList(name)));
+            if(handOff || pipe instanceof PipeLine){
+                upstreamConcurrency = concurrencyOf(pipe);
+            }
+        }
+        fuse(fusing, fusingNames, physicalPipes, plan);
+
         Pipe<?, ?> prevPipe = this;
         //设置处理任务的先后顺序
-        for(Pipe<?, ?> pipe: pipesList){
+        for(Pipe<?, ?> pipe: physicalPipes){
             prevPipe.setNextPipe(pipe);
             prevPipe = pipe;
         }
+        this.headPipe = physicalPipes.isEmpty() ? null : physicalPipes.get(0);
+        this.physicalPlan = Collections.unmodifiableList(plan);
 
         Runnable task = new Runnable() {
             @Override
             public void run() {
-                for(Pipe<?, ?> pipe: pipes){
+                //被融合的阶段由FusedPipe负责init，其修饰器不再使用
+                for(Pipe<?, ?> pipe: physicalPipes){
                     pipe.init(pipeCtx);
                 }
             }
@@ -88,14 +260,251 @@ public class SimplePipeline<IN, OUT> extends AbsractPipe<IN, OUT> implements Pip
         helperService.submit(task);
     }
 
+    /**
+     * 将连续的可融合阶段合并为一个物理阶段
+     */
+    private static void fuse(List<AbsractPipe<?, ?>> fusing, List<String> fusingNames,
+                             List<Pipe<?, ?>> physicalPipes, List<PhysicalStage> plan) {
+        if(fusing.isEmpty()){
+            return;
+        }
+        physicalPipes.add(new FusedPipe<Object, Object>(fusing));
+        plan.add(new PhysicalStage("FusedPipe", false, new ArrayList<String>(fusingNames)));
+        fusing.clear();
+        fusingNames.clear();
+    }
+
+    /**
+     * @param upstreamConcurrency
+     *          融合后执行pipe的线程个数上限，即上一个物理阶段的线程个数
+     * @return pipe可与上一阶段融合时返回实际执行处理的AbsractPipe，否则返回null
+     */
+    private AbsractPipe<?, ?> fusibleTarget(Pipe<?, ?> pipe, int upstreamConcurrency) {
+        Pipe<?, ?> target = unwrap(pipe);
+        StageCost cost = declaredCosts.get(pipe);
+        if(null == cost && pipe instanceof StageCostAware){
+            cost = ((StageCostAware) pipe).getStageCost();
+        }
+        if(null == cost && target instanceof StageCostAware){
+            cost = ((StageCostAware) target).getStageCost();
+        }
+        if(StageCost.CHEAP != cost){
+            return null;
+        }
+        //按键分区及保序模式依赖修饰器保证处理顺序，限流的阶段须保留其速率，均不能去掉
+        if(pipe instanceof KeyPartitionedPipeDecorator || pipe instanceof RateLimitedPipeDecorator){
+            return null;
+        }
+        //批量处理、准入控制与持久化的工作队列同样由修饰器实现，融合后将不再生效
+        if(pipe instanceof WorkThreadPipeDecorator){
+            WorkThreadPipeDecorator<?, ?> decorator = (WorkThreadPipeDecorator<?, ?>) pipe;
+            if(null != decorator.getReorderBuffer() || decorator.getBatchSize() > 1
+                    || decorator.workQueue instanceof AcknowledgingQueue){
+                return null;
+            }
+        }
+        if(pipe instanceof ThreadPoolPipeDecorator){
+            ThreadPoolPipeDecorator<?, ?> decorator = (ThreadPoolPipeDecorator<?, ?>) pipe;
+            if(null != decorator.getReorderBuffer() || decorator.getBatchSize() > 1
+                    || decorator.getMaxInFlight() > 0){
+                return null;
+            }
+            //无法确定线程池的线程个数上限时不能判断融合是否会破坏线程封闭
+            if(!(decorator.getExecutorService() instanceof ThreadPoolExecutor)){
+                return null;
+            }
+        }
+        //融合后将由更多的线程并发执行，去掉修饰器会破坏其线程封闭
+        if(pipe != target && concurrencyOf(pipe) < upstreamConcurrency){
+            return null;
+        }
+        //异步处理的Pipe及嵌套的流水线自行管理线程与后续阶段
+        if(!(target instanceof AbsractPipe) || target instanceof AbstractAsyncPipe
+                || target instanceof PipeLine){
+            return null;
+        }
+        return (AbsractPipe<?, ?>) target;
+    }
+
+    /**
+     * @return pipe的修饰器限定的线程个数，以init时的工作者线程个数（或线程池的最大线程数）为准；
+     *          不限定（或无法确定）时返回Integer.MAX_VALUE
+     */
+    private static int concurrencyOf(Pipe<?, ?> pipe) {
+        if(pipe instanceof RateLimitedPipeDecorator){
+            pipe = ((RateLimitedPipeDecorator<?, ?>) pipe).getDelegate();
+        }
+        if(pipe instanceof WorkThreadPipeDecorator){
+            return ((WorkThreadPipeDecorator<?, ?>) pipe).getWorkerCount();
+        }else if(pipe instanceof KeyPartitionedPipeDecorator){
+            return ((KeyPartitionedPipeDecorator<?, ?>) pipe).getLaneCount();
+        }else if(pipe instanceof ThreadPoolPipeDecorator){
+            ExecutorService executorService = ((ThreadPoolPipeDecorator<?, ?>) pipe).getExecutorService();
+            if(executorService instanceof ThreadPoolExecutor){
+                return ((ThreadPoolExecutor) executorService).getMaximumPoolSize();
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 融合后的物理执行计划，init之后可用，顺序与执行顺序一致
+     * @return
+     */
+    public List<PhysicalStage> getPhysicalPlan() {
+        return physicalPlan;
+    }
+
     public <INPUT, OUTPUT> void addAsWorkerThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, int workCount){
         addPipe(new WorkThreadPipeDecorator<INPUT, OUTPUT>(delegate, workCount));
     }
 
+    /**
+     * 以无锁环形队列作为工作队列的工作者线程Pipe
+     */
+    public <INPUT, OUTPUT> void addAsWorkerThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, int workCount,
+                                                          int ringBufferSize, WaitStrategy waitStrategy){
+        addPipe(new WorkThreadPipeDecorator<INPUT, OUTPUT>(delegate, workCount, ringBufferSize, waitStrategy));
+    }
+
+    /**
+     * 以批量方式处理的工作者线程Pipe：每个批次至多batchSize个元素，凑批至多等待maxBatchWaitMicros微秒
+     */
+    public <INPUT, OUTPUT> void addAsWorkerThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, int workCount,
+                                                          int batchSize, long maxBatchWaitMicros){
+        addPipe(new WorkThreadPipeDecorator<INPUT, OUTPUT>(delegate, workCount, batchSize, maxBatchWaitMicros));
+    }
+
     public <INPUT, OUTPUT> void addAsThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, ExecutorService executorService){
         addPipe(new ThreadPoolPipeDecorator<INPUT, OUTPUT>(delegate, executorService));
     }
 
+    /**
+     * 以批量方式处理的线程池Pipe：每个批次至多batchSize个元素，凑批至多等待maxBatchWaitMicros微秒
+     */
+    public <INPUT, OUTPUT> void addAsThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, ExecutorService executorService,
+                                                    int batchSize, long maxBatchWaitMicros){
+        addPipe(new ThreadPoolPipeDecorator<INPUT, OUTPUT>(delegate, executorService, batchSize, maxBatchWaitMicros));
+    }
+
+    /**
+     * 带准入控制的线程池Pipe：该阶段最多允许maxInFlight个元素在途，超出时按照admissionPolicy处理
+     */
+    public <INPUT, OUTPUT> void addAsThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, ExecutorService executorService,
+                                                    int maxInFlight, AdmissionPolicy admissionPolicy,
+                                                    long admissionTimeout, TimeUnit unit){
+        addPipe(new ThreadPoolPipeDecorator<INPUT, OUTPUT>(delegate, executorService, maxInFlight,
+                admissionPolicy, admissionTimeout, unit));
+    }
+
+    /**
+     * 保序的工作者线程Pipe：workCount个线程并行处理，输出经容量为reorderBufferSize的重排序缓冲区后按输入顺序交给下一个Pipe
+     */
+    public <INPUT, OUTPUT> void addAsOrderedWorkerThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, int workCount,
+                                                                 int reorderBufferSize){
+        addPipe(new WorkThreadPipeDecorator<INPUT, OUTPUT>(delegate, workCount, new ReorderBuffer(reorderBufferSize)));
+    }
+
+    /**
+     * 保序的线程池Pipe：输出经容量为reorderBufferSize的重排序缓冲区后按输入顺序交给下一个Pipe
+     */
+    public <INPUT, OUTPUT> void addAsOrderedThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, ExecutorService executorService,
+                                                           int reorderBufferSize){
+        addPipe(new ThreadPoolPipeDecorator<INPUT, OUTPUT>(delegate, executorService, new ReorderBuffer(reorderBufferSize)));
+    }
+
+    /**
+     * 按键分区的Pipe：键相同的元素由laneCount个单线程分区中的同一个按顺序处理，键不同的元素并行处理
+     */
+    public <INPUT, OUTPUT> void addAsKeyPartitionedPipe(Pipe<INPUT, OUTPUT> delegate, int laneCount,
+                                                       KeyExtractor<? super INPUT, ?> keyExtractor){
+        addPipe(new KeyPartitionedPipeDecorator<INPUT, OUTPUT>(delegate, laneCount, keyExtractor));
+    }
+
+    /**
+     * 限流的Pipe：元素按rateLimiter的速率交给delegate，需要等待许可的元素不占用提交线程
+     * delegate通常是自带线程的Pipe，如WorkThreadPipeDecorator
+     */
+    public <INPUT, OUTPUT> void addAsRateLimitedPipe(Pipe<INPUT, OUTPUT> delegate, RateLimiter rateLimiter){
+        addPipe(new RateLimitedPipeDecorator<INPUT, OUTPUT>(delegate, rateLimiter));
+    }
+
+    /**
+     * 限流的工作者线程Pipe：workCount个线程处理delegate，每秒至多permitsPerSecond个元素（空闲后至多burst个突发）
+     */
+    public <INPUT, OUTPUT> void addAsRateLimitedWorkerThreadBasedPipe(Pipe<INPUT, OUTPUT> delegate, int workCount,
+                                                                     double permitsPerSecond, int burst){
+        addAsRateLimitedPipe(new WorkThreadPipeDecorator<INPUT, OUTPUT>(delegate, workCount),
+                new RateLimiter(permitsPerSecond, burst));
+    }
+
+    /**
+     * 各处理阶段运行指标的快照，顺序与处理阶段的先后顺序一致
+     * 未实现MeasurablePipe的Pipe实例不在其中
+     * @return
+     */
+    public List<PipeMetricsSnapshot> metricsSnapshot(){
+        List<PipeMetricsSnapshot> snapshots = new ArrayList<PipeMetricsSnapshot>();
+        int index = 0;
+        for(Pipe<?, ?> pipe : pipes){
+            if(pipe instanceof MeasurablePipe){
+                snapshots.add(((MeasurablePipe) pipe).getPipeMetrics().snapshot(stageName(index, pipe)));
+            }
+            index++;
+        }
+        return snapshots;
+    }
+
+    /**
+     * 将该流水线的运行指标以MXBean的形式注册到平台MBeanServer，流水线shutdown时自动注销
+     * @param name
+     *          MBean名称，ObjectName为com.orrin.util.concurrent:type=SimplePipeline,name="name"
+     * @return
+     * @throws JMException
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        PipelineMetricsMXBean mbean = new PipelineMetricsMXBean() {
+            @Override
+            public List<PipeMetricsSnapshot> getStageMetrics() {
+                return metricsSnapshot();
+            }
+        };
+        metricsObjectName = JmxSupport.register(mbean, "SimplePipeline", name);
+        return metricsObjectName;
+    }
+
+    private static Pipe<?, ?> unwrap(Pipe<?, ?> pipe){
+        if(pipe instanceof RateLimitedPipeDecorator){
+            pipe = ((RateLimitedPipeDecorator<?, ?>) pipe).getDelegate();
+        }
+        if(pipe instanceof WorkThreadPipeDecorator){
+            return ((WorkThreadPipeDecorator<?, ?>) pipe).getDelegate();
+        }else if(pipe instanceof ThreadPoolPipeDecorator){
+            return ((ThreadPoolPipeDecorator<?, ?>) pipe).getDelegate();
+        }else if(pipe instanceof KeyPartitionedPipeDecorator){
+            return ((KeyPartitionedPipeDecorator<?, ?>) pipe).getDelegate();
+        }
+        return pipe;
+    }
+
+    private static String stageName(int index, Pipe<?, ?> pipe){
+        Pipe<?, ?> target = unwrap(pipe);
+
+        String name = target.getClass().getSimpleName();
+        if(name.isEmpty()){
+            //匿名类
+            name = target.getClass().getName();
+        }
+        if(target != pipe){
+            name = pipe.getClass().getSimpleName() + "(" + name + ")";
+        }
+        return index + ":" + name;
+    }
+
+    /**
+     * 只打印异常的PipeContext，出错的元素随即丢弃；需要重试、死信队列或熔断时使用ResilientPipeContext
+     * @return
+     */
     public PipeContext newDefaultPipeContext(){
         return new PipeContext() {
             @Override
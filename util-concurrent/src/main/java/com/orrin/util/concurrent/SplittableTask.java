@@ -0,0 +1,32 @@
+package com.orrin.util.concurrent;
+
+import java.util.List;
+
+/**
+ * 可递归拆分的子任务
+ * AbstractForkJoinPipe会不断拆分shouldSplit返回true的任务，拆分出的子任务可被ForkJoinPool中的空闲线程窃取执行
+ * @author orrin on 2026-10-17
+ *
+ * @param <V>
+ *     子任务的处理结果类型
+ */
+public interface SplittableTask<V> {
+    /**
+     * 任务是否足够大、值得继续拆分
+     * @return
+     */
+    public boolean shouldSplit();
+
+    /**
+     * 将任务拆分为若干更小的子任务，仅在shouldSplit返回true时调用
+     * @return
+     */
+    public List<SplittableTask<V>> split();
+
+    /**
+     * 直接执行不再拆分的任务
+     * @return
+     * @throws Exception
+     */
+    public V compute() throws Exception;
+}
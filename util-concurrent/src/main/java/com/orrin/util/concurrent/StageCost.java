@@ -0,0 +1,21 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 处理阶段的开销类型，供SimplePipeline在init时决定是否将其与上一阶段融合
+ * @author orrin on 2026-10-17
+ */
+public enum StageCost {
+    /**
+     * 很小的CPU计算，与上一阶段在同一线程中执行比经过一次队列与线程交接更快
+     * 融合后由上一阶段的各个线程并发执行，须是线程安全的；修饰器限定的线程个数少于上一阶段时不做融合
+     */
+    CHEAP,
+    /**
+     * 会阻塞（如IO、锁等待），须保留线程交接以免占住上游线程
+     */
+    BLOCKING,
+    /**
+     * 耗时较长的CPU计算，须保留线程交接以便并行处理
+     */
+    HEAVY
+}
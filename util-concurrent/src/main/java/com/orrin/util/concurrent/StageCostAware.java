@@ -0,0 +1,10 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 声明了开销类型的Pipe
+ * 也可在SimplePipeline.addPipe时指定开销类型
+ * @author orrin on 2026-10-17
+ */
+public interface StageCostAware {
+    public StageCost getStageCost();
+}
@@ -0,0 +1,18 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 任务处理结束的回调，由RingBufferSerializer的工作者线程调用
+ * @author orrin on 2026-10-17
+ *
+ * @param <V>
+ *      任务处理结果的类型
+ */
+public interface TaskCompletion<V> {
+    /**
+     * @param result
+     *          处理结果，处理失败时为null
+     * @param failure
+     *          处理失败的原因，处理成功时为null
+     */
+    public void onComplete(V result, Throwable failure);
+}
@@ -0,0 +1,55 @@
+package com.orrin.util.concurrent;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * 同一类任务在线程池中的排队与执行耗时快照
+ *
+ * @author orrin on 2026-10-17
+ */
+public class TaskTimingSnapshot {
+    private final String taskClass;
+    private final long failures;
+    //从提交到开始执行的耗时（纳秒）
+    private final LatencyHistogram.Snapshot queueWait;
+    //从开始执行到执行结束的耗时（纳秒）
+    private final LatencyHistogram.Snapshot runTime;
+
+    @ConstructorProperties({"taskClass", "failures", "queueWait", "runTime"})
+    public TaskTimingSnapshot(String taskClass, long failures,
+                              LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot runTime) {
+        this.taskClass = taskClass;
+        this.failures = failures;
+        this.queueWait = queueWait;
+        this.runTime = runTime;
+    }
+
+    public String getTaskClass() {
+        return taskClass;
+    }
+
+    /**
+     * @return 已执行结束的任务个数
+     */
+    public long getCount() {
+        return runTime.getCount();
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public LatencyHistogram.Snapshot getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram.Snapshot getRunTime() {
+        return runTime;
+    }
+
+    @Override
+    public String toString() {
+        return taskClass + "{failures=" + failures + ", queueWaitNanos=[" + queueWait
+                + "], runTimeNanos=[" + runTime + "]}";
+    }
+}
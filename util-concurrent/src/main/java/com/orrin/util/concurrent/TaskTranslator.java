@@ -0,0 +1,21 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 将提交方的参数写入RingBufferSerializer中预先分配、可重复使用的任务实例
+ * 实现类宜为无状态的单例，从而提交时不产生任何对象分配
+ * @author orrin on 2026-10-17
+ *
+ * @param <T>
+ *      任务的类型
+ * @param <A>
+ *      提交方参数的类型
+ */
+public interface TaskTranslator<T, A> {
+    /**
+     * @param task
+     *          槽位中的任务实例，其中保留着上一次使用时的内容，须全部覆盖
+     * @param arg
+     *          提交方参数
+     */
+    public void translateTo(T task, A arg);
+}
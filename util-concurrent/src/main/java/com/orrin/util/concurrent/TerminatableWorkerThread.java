@@ -1,13 +1,18 @@
 package com.orrin.util.concurrent;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 串行线程封闭（Serial Thread Confinement）模式WorkerThead参与者可复用实现
  * 该类使用来两阶段终止模式
+ * 批量模式下每次取出队列中至多maxBatchSize个任务（不足时最多再等待lingerTime），
+ * 一次性交给BatchTaskProcssor处理，再分别设置各个任务对应的Future
  * @author orrin on 2018-11-23
  *
  * @param <T>
@@ -21,10 +26,41 @@ public class TerminatableWorkerThread<T, V> extends AbstractTerminatableThread {
     //负责正真执行任务的对象
     private final TaskProcssor<T, V> taskProcssor;
 
+    //批量模式下使用，非批量模式时为null
+    private final BatchTaskProcssor<T, V> batchTaskProcssor;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+
     public TerminatableWorkerThread(BlockingQueue<Runnable> workQueue, TaskProcssor<T, V> taskProcssor) {
         super();
         this.workQueue = workQueue;
         this.taskProcssor = taskProcssor;
+        this.batchTaskProcssor = null;
+        this.maxBatchSize = 1;
+        this.lingerNanos = 0;
+    }
+
+    /**
+     * 批量模式
+     * @param maxBatchSize
+     *          每批次最多处理的任务个数
+     * @param lingerTime
+     *          取到第一个任务后为凑满批次最多等待的时间，0表示只取出已在队列中的任务
+     */
+    public TerminatableWorkerThread(BlockingQueue<Runnable> workQueue, BatchTaskProcssor<T, V> batchTaskProcssor,
+                                    int maxBatchSize, long lingerTime, TimeUnit unit) {
+        super();
+        if(maxBatchSize <= 0){
+            throw new IllegalArgumentException("maxBatchSize should be positive!");
+        }
+        if(lingerTime < 0){
+            throw new IllegalArgumentException("lingerTime should not be negative!");
+        }
+        this.workQueue = workQueue;
+        this.taskProcssor = batchTaskProcssor;
+        this.batchTaskProcssor = batchTaskProcssor;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = unit.toNanos(lingerTime);
     }
 
     /**
@@ -35,6 +71,12 @@ public class TerminatableWorkerThread<T, V> extends AbstractTerminatableThread {
      * @throws InterruptedException
      */
     public Future<V> submit(final T task) throws InterruptedException{
+        if(null != batchTaskProcssor){
+            BatchFutureTask<T, V> bft = new BatchFutureTask<T, V>(task, taskProcssor);
+            enqueue(bft);
+            return bft;
+        }
+
         Callable<V> callable = new Callable<V>() {
             @Override
             public V call() throws Exception {
@@ -43,12 +85,21 @@ public class TerminatableWorkerThread<T, V> extends AbstractTerminatableThread {
         };
 
         FutureTask<V> ft = new FutureTask<V>(callable);
-        workQueue.put(ft);
-
-        terminationToken.reservations.incrementAndGet();
+        enqueue(ft);
         return ft;
     }
 
+    private void enqueue(Runnable ft) throws InterruptedException {
+        //先登记再入队，使工作者线程的release总是发生在对应的reserve之后
+        terminationToken.reserve();
+        try {
+            workQueue.put(ft);
+        } catch (InterruptedException e) {
+            terminationToken.release();
+            throw e;
+        }
+    }
+
     /**
      * 执行任务的处理逻辑
      *
@@ -56,12 +107,106 @@ public class TerminatableWorkerThread<T, V> extends AbstractTerminatableThread {
      */
     @Override
     protected void doRun() throws Exception {
+        if(null != batchTaskProcssor){
+            doRunBatch();
+            return;
+        }
+
         Runnable ft = workQueue.take();
 
         try {
             ft.run();
         } finally{
-            terminationToken.reservations.decrementAndGet();
+            terminationToken.release();
+        }
+    }
+
+    private void doRunBatch() throws Exception {
+        List<Runnable> drained = new ArrayList<Runnable>(maxBatchSize);
+        drained.add(workQueue.take());
+
+        InterruptedException interrupted = null;
+        try {
+            QueueDrainer.drain(workQueue, drained, maxBatchSize - 1, lingerNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            //已取出的任务仍需处理
+            interrupted = e;
+        }
+
+        try {
+            processBatch(drained);
+        } finally {
+            terminationToken.release(drained.size());
+        }
+
+        if(null != interrupted){
+            throw interrupted;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void processBatch(List<Runnable> drained) {
+        List<BatchFutureTask<T, V>> entries = new ArrayList<BatchFutureTask<T, V>>(drained.size());
+        List<T> tasks = new ArrayList<T>(drained.size());
+        for(Runnable r : drained){
+            if(r instanceof BatchFutureTask){
+                BatchFutureTask<T, V> bft = (BatchFutureTask<T, V>) r;
+                //跳过已被取消的任务
+                if(!bft.isDone()){
+                    entries.add(bft);
+                    tasks.add(bft.task);
+                }
+            }else{
+                r.run();
+            }
+        }
+        if(entries.isEmpty()){
+            return;
+        }
+
+        List<V> results;
+        try {
+            results = batchTaskProcssor.doProcessBatch(tasks);
+            if(null == results || results.size() != tasks.size()){
+                throw new IllegalStateException("doProcessBatch should return exactly one result per task, expected "
+                        + tasks.size() + " but was " + (null == results ? null : results.size()));
+            }
+        } catch (Throwable e) {
+            //Error同样以失败结束整个批次，否则提交方将一直等待，且工作者线程不能因此退出
+            for(BatchFutureTask<T, V> bft : entries){
+                bft.fail(e);
+            }
+            return;
+        }
+
+        for(int i=0; i<entries.size(); i++){
+            entries.get(i).complete(results.get(i));
+        }
+    }
+
+    /**
+     * 批量模式下的任务，由工作者线程在批量处理结束后设置其结果
+     * 单独执行run时按单个任务处理
+     */
+    private static class BatchFutureTask<T, V> extends FutureTask<V> {
+        final T task;
+
+        BatchFutureTask(final T task, final TaskProcssor<T, V> taskProcssor) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return taskProcssor.doProcess(task);
+                }
+            });
+            this.task = task;
+        }
+
+        void complete(V result) {
+            set(result);
+        }
+
+        void fail(Throwable cause) {
+            setException(cause);
         }
     }
 }
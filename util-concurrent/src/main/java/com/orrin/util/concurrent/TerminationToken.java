@@ -3,16 +3,30 @@ package com.orrin.util.concurrent;
 import java.lang.ref.WeakReference;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 线程停止标志
+ * 待处理任务数（reservations）以两个分段计数器分别累计登记与完成的次数，
+ * 避免同一阶段的所有生产者与工作者线程竞争同一个缓存行；
+ * 判断是否已处理完毕时先读完成数再读登记数，只要每次release都发生在对应的reserve之后，
+ * 结果就不会把仍在处理中的任务漏掉
  * @author orrin on 2018-11-23
  */
 public class TerminationToken {
     protected volatile boolean toShutDown = false;
+    /**
+     * @deprecated 单一的原子计数器在多核下是竞争热点，请使用reserve/release/isDrained。
+     *             保留该字段仅为兼容，其值仍计入reservationCount
+     */
+    @Deprecated
     public final AtomicInteger reservations = new AtomicInteger();
 
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
     /**
      * 在多个可停止线程实例共享一个TerminationToken实例的情况下，该队列用于记录那些共享TerminationToken实例
      * 的可停止线程，以便尽可能减少锁的使用情况下，实现这些线程的停止
@@ -32,6 +46,66 @@ public class TerminationToken {
         this.toShutDown = toShutDown;
     }
 
+    /**
+     * 登记一个待处理的任务，须在任务可能被处理（即放入队列或提交给线程池）之前调用
+     */
+    public void reserve() {
+        reserved.increment();
+    }
+
+    public void reserve(int count) {
+        reserved.add(count);
+    }
+
+    /**
+     * 一个已登记的任务处理结束（或放弃提交）
+     */
+    public void release() {
+        released.increment();
+    }
+
+    public void release(int count) {
+        released.add(count);
+    }
+
+    /**
+     * @return 已登记但尚未处理结束的任务个数。存在并发的登记与完成时为近似值，但不会小于此刻真正处理中的任务个数
+     */
+    @SuppressWarnings("deprecation")
+    public long reservationCount() {
+        //先读完成数：已计入的完成所对应的登记一定也能被随后的读取看到
+        long done = released.sum();
+        return reserved.sum() - done + reservations.get();
+    }
+
+    /**
+     * @return 是否没有待处理的任务
+     */
+    public boolean isDrained() {
+        return reservationCount() <= 0;
+    }
+
+    /**
+     * 等待待处理的任务全部处理结束
+     * @param deadlineNanos
+     *          以System.nanoTime()为基准的期限
+     * @return 期限之前是否已没有待处理的任务
+     * @throws InterruptedException
+     */
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        //以逐渐变长的间隔轮询，避免在reserve/release的热路径上增加通知的开销
+        long pauseNanos = TimeUnit.MICROSECONDS.toNanos(100);
+        while(!isDrained()){
+            long remaining = deadlineNanos - System.nanoTime();
+            if(remaining <= 0){
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, pauseNanos));
+            pauseNanos = Math.min(pauseNanos * 2, TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        return true;
+    }
+
     protected void register(Terminatable thread) {
         coordinatedThread.add(new WeakReference<Terminatable>(thread));
     }
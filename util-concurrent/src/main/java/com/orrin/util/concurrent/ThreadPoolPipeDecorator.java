@@ -1,11 +1,25 @@
 package com.orrin.util.concurrent;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /** 基于线程池的Pipe实现类
+ * 当maxInFlight大于0时，该阶段最多允许maxInFlight个元素在途（已提交但尚未处理完），
+ * 没有可用许可时按照AdmissionPolicy阻塞、限时等待或拒绝上游提交的元素，被拒绝的元素交由PipeContext处理。
+ * 这样突发流量只会使上游的延迟平滑上升，而不会堆积无界的任务或触发线程池的拒绝策略
+ * 当batchSize大于1时，输入元素先进入待处理队列，由线程池中的任务每次取出至多batchSize个元素
+ * （或等待至多maxBatchWaitMicros微秒）后以批次的形式交给被修饰的Pipe实例处理
+ * 指定ReorderBuffer时为保序模式：每个元素提交前分配序号，
+ * 被修饰的Pipe实例的输出经ReorderBuffer重排序后按提交顺序交给下一个Pipe实例
  * @author orrin on 2018-11-23
  *
  * @param <IN>
@@ -13,102 +27,474 @@ import java.util.concurrent.TimeUnit;
  * @param <OUT>
  *     输出类型
  */
-public class ThreadPoolPipeDecorator<IN, OUT> implements Pipe<IN, OUT> {
+public class ThreadPoolPipeDecorator<IN, OUT> implements Pipe<IN, OUT>, MeasurablePipe, DrainablePipe {
     private final Pipe<IN, OUT> delegate;
+    private final PipeMetrics pipeMetrics;
 
-    //线程池停止标志
-    private final TerminationToken terminationToken;
+    //该阶段的停止标志，与使用同一线程池的其他阶段互不影响
+    private final TerminationToken terminationToken = new TerminationToken();
     private final ExecutorService executorService;
-    private final CountDownLatch stageProcessDoneLatch = new CountDownLatch(1);
+
+    //每个批次的最大元素个数，1表示不做批量处理
+    private final int batchSize;
+    //凑批时最多等待的时间（微秒）
+    private final long maxBatchWaitMicros;
+    //批量模式下等待凑批的输入元素
+    private final BlockingQueue<IN> pendingInputs;
+    //是否已有凑批任务提交到线程池
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    //在途元素许可，null表示不限制
+    private final Semaphore credits;
+    private final int maxInFlight;
+    private final AdmissionPolicy admissionPolicy;
+    private final long admissionTimeoutNanos;
+    //因没有可用许可而被拒绝的元素个数
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile PipeContext pipeCtx;
+
+    //保序模式下的重排序缓冲区，null表示不保序
+    private final ReorderBuffer reorderBuffer;
+
+    //排空时放弃的元素交给该handler，非null表示该阶段已被放弃
+    private volatile LeftoverHandler leftoverHandler;
+    private volatile String stageName;
+    private final LongAdder leftoverCount = new LongAdder();
 
     public ThreadPoolPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService) {
+        this(delegate, executorService, 1, 0);
+    }
+
+    public ThreadPoolPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService,
+                                   int batchSize, long maxBatchWaitMicros) {
+        this(delegate, executorService, batchSize, maxBatchWaitMicros, 0, AdmissionPolicy.BLOCK, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param maxInFlight
+     *          该阶段允许的最大在途元素个数，小于等于0表示不限制
+     * @param admissionPolicy
+     *          没有可用许可时的处理策略
+     * @param admissionTimeout
+     *          admissionPolicy为TIMEOUT时最多等待的时间
+     * @param unit
+     */
+    public ThreadPoolPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService, int maxInFlight,
+                                   AdmissionPolicy admissionPolicy, long admissionTimeout, TimeUnit unit) {
+        this(delegate, executorService, 1, 0, maxInFlight, admissionPolicy, admissionTimeout, unit);
+    }
+
+    /**
+     * 保序模式：线程池中的多个任务并行处理，输出仍按输入顺序交给下一个Pipe实例
+     */
+    public ThreadPoolPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService,
+                                   ReorderBuffer reorderBuffer) {
+        this(delegate, executorService, 1, 0, 0, AdmissionPolicy.BLOCK, 0, TimeUnit.MILLISECONDS, reorderBuffer);
+        if(null == reorderBuffer){
+            throw new NullPointerException("reorderBuffer");
+        }
+    }
+
+    public ThreadPoolPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService,
+                                   int batchSize, long maxBatchWaitMicros, int maxInFlight,
+                                   AdmissionPolicy admissionPolicy, long admissionTimeout, TimeUnit unit) {
+        this(delegate, executorService, batchSize, maxBatchWaitMicros, maxInFlight, admissionPolicy,
+                admissionTimeout, unit, null);
+    }
+
+    private ThreadPoolPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService,
+                                    int batchSize, long maxBatchWaitMicros, int maxInFlight,
+                                    AdmissionPolicy admissionPolicy, long admissionTimeout, TimeUnit unit,
+                                    ReorderBuffer reorderBuffer) {
         super();
+        if(batchSize <= 0){
+            throw new IllegalArgumentException("batchSize should be positive!");
+        }
+        if(null == admissionPolicy){
+            throw new NullPointerException("admissionPolicy");
+        }
+        this.maxInFlight = maxInFlight;
+        this.credits = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+        this.admissionPolicy = admissionPolicy;
+        this.admissionTimeoutNanos = unit.toNanos(admissionTimeout);
         this.delegate = delegate;
         this.executorService = executorService;
-        terminationToken = TerminationToken.newInstance(executorService);
+        this.batchSize = batchSize;
+        this.maxBatchWaitMicros = maxBatchWaitMicros;
+        this.pendingInputs = batchSize > 1 ? new LinkedBlockingQueue<IN>() : null;
+        this.reorderBuffer = reorderBuffer;
+
+        this.pipeMetrics = delegate instanceof MeasurablePipe
+                ? ((MeasurablePipe) delegate).getPipeMetrics() : new PipeMetrics();
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_QUEUE_DEPTH, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                long depth = null == pendingInputs ? 0 : pendingInputs.size();
+                if(ThreadPoolPipeDecorator.this.executorService instanceof ThreadPoolExecutor){
+                    //线程池的任务队列为多个Pipe实例共用
+                    depth += ((ThreadPoolExecutor) ThreadPoolPipeDecorator.this.executorService).getQueue().size();
+                }
+                return depth;
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_IN_FLIGHT, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return terminationToken.reservationCount();
+            }
+        });
+        if(null != credits){
+            pipeMetrics.registerGauge(PipeMetrics.GAUGE_AVAILABLE_CREDITS, new LongSupplier() {
+                @Override
+                public long getAsLong() {
+                    return credits.availablePermits();
+                }
+            });
+            pipeMetrics.registerGauge(PipeMetrics.GAUGE_ADMISSION_REJECTED, new LongSupplier() {
+                @Override
+                public long getAsLong() {
+                    return rejectedCount.sum();
+                }
+            });
+        }
+        if(null != reorderBuffer){
+            reorderBuffer.registerGauges(pipeMetrics);
+        }
+    }
+
+    /**
+     * @return 当前可用的许可数，不限制在途元素个数时返回-1
+     */
+    public int getAvailableCredits() {
+        return null == credits ? -1 : credits.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return 因没有可用许可而被拒绝的元素个数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 返回被修饰Pipe实例的运行指标，并附加线程池队列深度与在途任务数
+     */
+    @Override
+    public PipeMetrics getPipeMetrics() {
+        return pipeMetrics;
+    }
+
+    public Pipe<IN, OUT> getDelegate() {
+        return delegate;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * @return 每个批次的最大元素个数，1表示不做批量处理
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return 保序模式下的重排序缓冲区，不保序时返回null
+     */
+    public ReorderBuffer getReorderBuffer() {
+        return reorderBuffer;
     }
 
     @Override
     public void setNextPipe(Pipe<?, ?> nextPipe) {
-        delegate.setNextPipe(nextPipe);
+        if(null != reorderBuffer){
+            reorderBuffer.setNextPipe(nextPipe);
+            delegate.setNextPipe(reorderBuffer);
+        }else{
+            delegate.setNextPipe(nextPipe);
+        }
     }
 
     @Override
     public void process(IN input) throws InterruptedException {
+        if(null != leftoverHandler){
+            handOver(input);
+            return;
+        }
+        if(!admit(input)){
+            return;
+        }
+
+        if(batchSize > 1){
+            terminationToken.reserve();
+            pendingInputs.offer(input);
+            scheduleDrain();
+            return;
+        }
+
+        final long sequence;
+        if(null != reorderBuffer){
+            try {
+                sequence = reorderBuffer.acquire();
+            } catch (InterruptedException e) {
+                releaseCredits(1);
+                throw e;
+            }
+        }else{
+            sequence = -1;
+        }
+
         Runnable task = new Runnable() {
             @Override
             public void run() {
-                int remainingReservations = -1;
+                if(null != reorderBuffer){
+                    reorderBuffer.begin();
+                }
                 try {
-                    delegate.process(input);
+                    if(null != leftoverHandler){
+                        //该阶段已被放弃，尚未开始处理的元素不再处理
+                        handOver(input);
+                    }else{
+                        delegate.process(input);
+                    }
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }finally {
-                    remainingReservations = terminationToken.reservations.decrementAndGet();
-                }
-
-                if(terminationToken.isToShutDown()  &&  0 == remainingReservations){
-                    //最后一个任务执行结束
-                    stageProcessDoneLatch.countDown();
+                    if(null != reorderBuffer){
+                        reorderBuffer.complete(sequence);
+                    }
+                    releaseCredits(1);
+                    terminationToken.release();
                 }
             }
         };
 
-        executorService.submit(task);
-        terminationToken.reservations.incrementAndGet();
+        //先登记再提交，使任务中的release总是发生在对应的reserve之后
+        terminationToken.reserve();
+        try {
+            executorService.submit(task);
+        } catch (RuntimeException e) {
+            terminationToken.release();
+            if(null != reorderBuffer){
+                reorderBuffer.skip(sequence);
+            }
+            releaseCredits(1);
+            throw e;
+        }
     }
 
     @Override
-    public void init(PipeContext pipeCtx) {
-        delegate.init(pipeCtx);
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        if(null != reorderBuffer || null != leftoverHandler){
+            //保序模式下每个元素需要各自的序号
+            for(IN input : inputs){
+                process(input);
+            }
+            return;
+        }
+
+        if(null != credits){
+            List<IN> admitted = new ArrayList<IN>(inputs.size());
+            for(IN input : inputs){
+                if(admit(input)){
+                    admitted.add(input);
+                }
+            }
+            inputs = admitted;
+        }
+        if(inputs.isEmpty()){
+            return;
+        }
+
+        if(batchSize > 1){
+            terminationToken.reserve(inputs.size());
+            pendingInputs.addAll(inputs);
+            scheduleDrain();
+            return;
+        }
+
+        terminationToken.reserve(inputs.size());
+        try {
+            executorService.submit(newBatchTask(new ArrayList<IN>(inputs)));
+        } catch (RuntimeException e) {
+            terminationToken.release(inputs.size());
+            releaseCredits(inputs.size());
+            throw e;
+        }
     }
 
-    @Override
-    public void shutdown(long timeout, TimeUnit unit) {
-        terminationToken.setIsToShutdown();
-        if(terminationToken.reservations.get() > 0){
-            try {
-                if(stageProcessDoneLatch.getCount() > 0){
-                    //保证线程池中的所有任务都已经执行结束才delegate.shutdown
-                    stageProcessDoneLatch.await(timeout, unit);
+    /**
+     * 确保有且仅有一个凑批任务在线程池中等待或收集输入元素
+     */
+    private void scheduleDrain() {
+        if(!pendingInputs.isEmpty() && drainScheduled.compareAndSet(false, true)){
+            executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    List<IN> batch = new ArrayList<IN>(batchSize);
+                    try {
+                        QueueDrainer.drain(pendingInputs, batch, batchSize, maxBatchWaitMicros, TimeUnit.MICROSECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        drainScheduled.set(false);
+                    }
+
+                    //收集完一个批次后即允许下一个凑批任务开始，当前批次的处理与之并行
+                    scheduleDrain();
+                    if(!batch.isEmpty()){
+                        newBatchTask(batch).run();
+                    }
                 }
-            } catch (InterruptedException e) {
+            });
+        }
+    }
+
+    private Runnable newBatchTask(final List<IN> batch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if(null != leftoverHandler){
+                        for(IN input : batch){
+                            handOver(input);
+                        }
+                    }else{
+                        delegate.processBatch(batch);
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }finally {
+                    releaseCredits(batch.size());
+                    terminationToken.release(batch.size());
+                }
+            }
+        };
+    }
+
+    /**
+     * 为输入元素申请一个在途许可
+     * @param input
+     * @return 是否准入。未准入的元素已交由PipeContext处理
+     * @throws InterruptedException
+     */
+    private boolean admit(IN input) throws InterruptedException {
+        if(null == credits){
+            return true;
+        }
+
+        boolean admitted;
+        switch (admissionPolicy){
+            case TIMEOUT:
+                admitted = credits.tryAcquire(admissionTimeoutNanos, TimeUnit.NANOSECONDS);
+                break;
+            case SHED:
+                admitted = credits.tryAcquire();
+                break;
+            default:
+                credits.acquire();
+                admitted = true;
+        }
+
+        if(!admitted){
+            rejectedCount.increment();
+            PipeContext ctx = pipeCtx;
+            PipeException e = new PipeException(this, input,
+                    "Admission rejected, " + maxInFlight + " items already in flight (" + admissionPolicy + ")");
+            if(null != ctx){
+                ctx.handleError(e);
+            }else{
                 e.printStackTrace();
             }
         }
+        return admitted;
+    }
+
+    private void releaseCredits(int count) {
+        if(null != credits){
+            credits.release(count);
+        }
+    }
 
-        delegate.shutdown(timeout, unit);
+    @Override
+    public void init(PipeContext pipeCtx) {
+        this.pipeCtx = pipeCtx;
+        delegate.init(pipeCtx);
+        pipeCtx.registerEntry(delegate, this);
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        return terminationToken.awaitDrained(deadlineNanos);
     }
 
     /**
-     * 线程池停止标志
-     * 每个ExecutorService实例对应唯一的一个TerminationToken实例
-     * 这里使用了两阶段终止模式（Two-phase Termination）的思想来停止多个Pipe实例所共用的线程池实例
+     * 批量模式下等待凑批的元素在调用线程中交出；已提交给线程池的任务在开始执行时交出其元素，
+     * 因此这些元素在执行到之前仍计入getInFlightCount
      */
-    private static class TerminationToken extends com.orrin.util.concurrent.TerminationToken{
-        private final static ConcurrentHashMap<ExecutorService, TerminationToken>
-                INSTANCE_MAP = new ConcurrentHashMap<ExecutorService, TerminationToken>();
+    @Override
+    public void abandon(String stageName, LeftoverHandler handler) {
+        this.stageName = stageName;
+        this.leftoverHandler = handler;
 
-        private TerminationToken(){
+        if(null != pendingInputs){
+            List<IN> pending = new ArrayList<IN>();
+            pendingInputs.drainTo(pending);
+            for(IN input : pending){
+                handOver(input);
+            }
+            releaseCredits(pending.size());
+            terminationToken.release(pending.size());
+        }
+    }
 
+    private void handOver(IN input) {
+        leftoverCount.increment();
+        try {
+            leftoverHandler.onLeftover(stageName, input);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
         }
+    }
 
-        void setIsToShutdown(){
-            this.toShutDown = true;
+    @Override
+    public long getInFlightCount() {
+        return terminationToken.reservationCount();
+    }
+
+    @Override
+    public long getLeftoverCount() {
+        return leftoverCount.sum();
+    }
+
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        terminationToken.setIsToShutdown();
+        try {
+            //保证线程池中该阶段的所有任务都已经执行结束才delegate.shutdown
+            awaitDrained(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        static TerminationToken newInstance(ExecutorService executorService){
-            TerminationToken token = INSTANCE_MAP.get(executorService);
-            if(null == token){
-                token = new TerminationToken();
-                TerminationToken existingToken = INSTANCE_MAP.putIfAbsent(executorService, token);
+        delegate.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
 
-                if(null != existingToken){
-                    token = existingToken;
-                }
-            }
+    /**
+     * 该阶段的停止标志
+     * 线程池可能为多个Pipe实例共用，每个Pipe实例各自记录其提交到线程池中尚未执行结束的任务，
+     * 从而停止一个阶段时只需等待该阶段自己的任务
+     */
+    private static class TerminationToken extends com.orrin.util.concurrent.TerminationToken{
 
-            return token;
+        void setIsToShutdown(){
+            this.toShutDown = true;
         }
     }
 }
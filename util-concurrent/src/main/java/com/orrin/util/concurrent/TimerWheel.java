@@ -0,0 +1,189 @@
+package com.orrin.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 时间轮定时器（Hashed Wheel Timer）
+ * 由一个守护线程按固定的tick推进时间轮，到期的任务交给dispatcher执行，时间轮线程本身不执行任务；
+ * 调度一个任务只是一次无锁入队，适合大量短时延、无需精确触发的定时任务（如重试的退避）
+ * 任务的实际触发时间可能比期望的晚至多一个tick
+ *
+ * @author orrin on 2026-10-17
+ */
+public class TimerWheel {
+    private final long tickNanos;
+    private final int mask;
+    //每个槽位是一个单向链表，只由时间轮线程访问
+    private final Timeout[] wheel;
+    //新调度的任务，由时间轮线程在每个tick开始时放入槽位
+    private final ConcurrentLinkedQueue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final Executor dispatcher;
+    private final String name;
+
+    private AbstractTerminatableThread worker;
+    private volatile boolean stopped = false;
+    private volatile long startNanos;
+    //只由时间轮线程访问
+    private long tick = 0;
+
+    /**
+     * @param tickDuration
+     *          时间轮每一格代表的时长
+     * @param wheelSize
+     *          时间轮的格数，向上取整为2的幂
+     * @param dispatcher
+     *          执行到期任务的Executor
+     */
+    public TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Executor dispatcher) {
+        if(tickDuration <= 0 || wheelSize <= 0){
+            throw new IllegalArgumentException("tickDuration and wheelSize should be positive!");
+        }
+        int size = 1;
+        while(size < wheelSize){
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.wheel = new Timeout[size];
+        this.dispatcher = dispatcher;
+    }
+
+    public synchronized void start() {
+        if(null != worker){
+            throw new IllegalStateException("TimerWheel already started!");
+        }
+        startNanos = System.nanoTime();
+        worker = new AbstractTerminatableThread() {
+            @Override
+            protected void doRun() throws Exception {
+                long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+                if(sleepNanos > 0){
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+                transferPending();
+                expire(wheel[(int) (tick & mask)]);
+                tick++;
+            }
+        };
+        worker.setName(name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 在delay之后将task交给dispatcher执行
+     * @return 定时器已停止时返回false
+     */
+    public boolean schedule(Runnable task, long delay, TimeUnit unit) {
+        if(stopped){
+            return false;
+        }
+        pendingCount.incrementAndGet();
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        pendingTimeouts.add(timeout);
+        //与stop并发时，stop可能已经取走了pendingTimeouts中的任务；仍在队列中的任务既不会执行也不会被stop返回
+        if(stopped && pendingTimeouts.remove(timeout)){
+            pendingCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return 已调度但尚未交给dispatcher的任务个数
+     */
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * 停止时间轮线程
+     * @return 尚未到期（或到期但尚未交给dispatcher）的任务
+     */
+    public List<Runnable> stop() {
+        stopped = true;
+        AbstractTerminatableThread thread;
+        synchronized (this){
+            thread = worker;
+        }
+        if(null != thread){
+            thread.terminate(true);
+        }
+
+        List<Runnable> unexecuted = new ArrayList<Runnable>();
+        for(int i=0; i<wheel.length; i++){
+            for(Timeout timeout = wheel[i]; null != timeout; timeout = timeout.next){
+                unexecuted.add(timeout.task);
+            }
+            wheel[i] = null;
+        }
+        Timeout timeout;
+        while(null != (timeout = pendingTimeouts.poll())){
+            unexecuted.add(timeout.task);
+        }
+        pendingCount.addAndGet(-unexecuted.size());
+        return unexecuted;
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while(null != (timeout = pendingTimeouts.poll())){
+            //到期所在的tick（该tick结束时触发），已过期的放入当前tick
+            long deadlineTick = Math.max(tick, (timeout.deadline - startNanos) / tickNanos);
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            int index = (int) (deadlineTick & mask);
+            timeout.next = wheel[index];
+            wheel[index] = timeout;
+        }
+    }
+
+    private void expire(Timeout head) {
+        Timeout prev = null;
+        Timeout timeout = head;
+        while(null != timeout){
+            Timeout next = timeout.next;
+            if(timeout.remainingRounds > 0){
+                timeout.remainingRounds--;
+                prev = timeout;
+            }else{
+                //从槽位中移除
+                if(null == prev){
+                    wheel[(int) (tick & mask)] = next;
+                }else{
+                    prev.next = next;
+                }
+                pendingCount.decrementAndGet();
+                dispatch(timeout.task);
+            }
+            timeout = next;
+        }
+    }
+
+    private void dispatch(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Timeout {
+        final Runnable task;
+        final long deadline;
+        long remainingRounds;
+        Timeout next;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -1,93 +1,645 @@
 package com.orrin.util.concurrent;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
+ * 任务执行失败时打印提交任务的线程调用栈（Client stack trace）的线程池
+ * 调用栈的采集方式由TraceMode指定：
+ * FULL在每次提交时采集完整调用栈；SAMPLED每sampleInterval次提交随机采集一次；
+ * CALLER通过StackWalker只采集调用方的callerFrames个栈帧，且栈帧仅在任务失败时才转换为StackTraceElement
+ * （运行于Java 8时StackWalker不可用，CALLER退化为FULL）；OFF不采集
+ * FULL的开销随调用栈深度线性增长；CALLER有数微秒的固定开销，只在调用栈较深时才比FULL便宜；
+ * 生产环境需要常开时宜使用SAMPLED（见TraceExecutorBenchmark）
+ * 线程池同时按任务类型统计任务的排队耗时（提交到开始执行）与执行耗时（开始执行到执行结束），
+ * 以及被拒绝、由CallerRunsPolicy交给提交线程执行的任务个数，可通过telemetrySnapshot或MXBean获取，
+ * 用于依据实际负载确定corePoolSize与maxPoolSize
+ * 线程池实现ResizablePool，工作者线程个数即maxPoolSize，可交由AdaptivePoolSizer依据负载自动调整
+ * 每个任务只包装一次：submit经由newTaskFor生成的TraceFutureTask在execute中不再重复包装
  * @author orrin.zhang on 2018/8/16.
  */
-public class TraceThreadPoolExecutor extends ThreadPoolExecutor {
+public class TraceThreadPoolExecutor extends ThreadPoolExecutor implements ResizablePool {
+
+	public enum TraceMode {
+		OFF, FULL, SAMPLED, CALLER
+	}
+
+	private volatile TraceMode traceMode;
+	private volatile int sampleInterval = 100;
+	private volatile int callerFrames;
+	//CALLER模式使用的StackWalker，首批获取的栈帧数与callerFrames匹配
+	private volatile Object stackWalker;
+
+	//按任务类型统计耗时，类型个数超过上限后的任务计入OTHER_TASKS
+	private static final int MAX_TASK_CLASSES = 256;
+	private static final String OTHER_TASKS = "<other>";
+	private final ConcurrentMap<String, TaskTimings> taskTimings = new ConcurrentHashMap<String, TaskTimings>();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder callerRunsCount = new LongAdder();
+	//正在执行的任务数，包括由提交线程执行的任务
+	private final AtomicInteger runningCount = new AtomicInteger();
+	private final LongAccumulator peakRunningCount = new LongAccumulator(new LongBinaryOperator() {
+		@Override
+		public long applyAsLong(long left, long right) {
+			return Math.max(left, right);
+		}
+	}, 0);
+	private volatile ObjectName telemetryObjectName;
 
 	public TraceThreadPoolExecutor(int corePoolSize, int maxPoolSize, int keepAliveTime) {
+		this(corePoolSize, maxPoolSize, keepAliveTime, TraceMode.FULL);
+	}
+
+	public TraceThreadPoolExecutor(int corePoolSize, int maxPoolSize, int keepAliveTime, TraceMode traceMode) {
 		super(corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
 		//对拒绝task的处理策略
-		super.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		setTraceMode(traceMode);
+		setCallerFrames(8);
+	}
+
+	public TraceMode getTraceMode() {
+		return traceMode;
+	}
 
+	/**
+	 * 运行期间可随时切换，仅影响之后提交的任务
+	 */
+	public void setTraceMode(TraceMode traceMode) {
+		if (null == traceMode) {
+			throw new NullPointerException("traceMode");
+		}
+		this.traceMode = traceMode;
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * @param sampleInterval
+	 *          SAMPLED模式下平均每sampleInterval次提交采集一次调用栈
+	 */
+	public void setSampleInterval(int sampleInterval) {
+		if (sampleInterval <= 0) {
+			throw new IllegalArgumentException("sampleInterval should be positive!");
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	public int getCallerFrames() {
+		return callerFrames;
+	}
+
+	/**
+	 * @param callerFrames
+	 *          CALLER模式下采集的调用方栈帧个数
+	 */
+	public void setCallerFrames(int callerFrames) {
+		if (callerFrames <= 0) {
+			throw new IllegalArgumentException("callerFrames should be positive!");
+		}
+		this.callerFrames = callerFrames;
+		this.stackWalker = StackWalkerSupport.newWalker(callerFrames);
 	}
 
 	@Override
 	public void execute(Runnable task) {
-		ContextAwareRunnable contextAwareCallable = new ContextAwareRunnable(task, clientTrace(), Thread.currentThread().getName());
-		super.execute(contextAwareCallable);
+		if (task instanceof TraceFutureTask) {
+			//submit提交的任务已在newTaskFor中包装
+			super.execute(task);
+			return;
+		}
+
+		super.execute(new ContextAwareRunnable(task, clientTrace()));
 	}
 
 	@Override
-	public Future<?> submit(Runnable task) {
-		ContextAwareRunnable contextAwareCallable = new ContextAwareRunnable(task, clientTrace(), Thread.currentThread().getName());
-		return super.submit(contextAwareCallable);
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new TraceFutureTask<T>(Executors.callable(runnable, value), runnable.getClass(), clientTrace());
 	}
 
 	@Override
-	public <T> Future<T> submit(Callable<T> task) {
-		ContextAwareCallable contextAwareCallable = new ContextAwareCallable(task, clientTrace());
-		return super.submit(contextAwareCallable);
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> task) {
+		return new TraceFutureTask<T>(task, task.getClass(), clientTrace());
 	}
 
+	/**
+	 * 设置的处理策略外包装一层，以统计被拒绝及由提交线程执行的任务
+	 */
+	@Override
+	public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+		if (null == handler) {
+			throw new NullPointerException("handler");
+		}
+		super.setRejectedExecutionHandler(new TelemetryRejectedExecutionHandler(handler));
+	}
 
 	@Override
-	protected <T> RunnableFuture<T> newTaskFor(Callable<T> task) {
-		ContextAwareCallable contextAwareCallable = new ContextAwareCallable(task, clientTrace());
-		return super.newTaskFor(contextAwareCallable);
+	public RejectedExecutionHandler getRejectedExecutionHandler() {
+		RejectedExecutionHandler handler = super.getRejectedExecutionHandler();
+		if (handler instanceof TelemetryRejectedExecutionHandler) {
+			return ((TelemetryRejectedExecutionHandler) handler).delegate;
+		}
+		return handler;
+	}
+
+	@Override
+	protected void beforeExecute(Thread t, Runnable r) {
+		super.beforeExecute(t, r);
+		onStart(r);
 	}
 
-	private Exception clientTrace() {
-		return new Exception("Client stack trace");
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		onFinish(r, null != t);
+		super.afterExecute(r, t);
 	}
 
-	static class ContextAwareRunnable implements Runnable {
-		private Runnable task;
-		private Exception exception;
-		private String clientThreadName;
+	@Override
+	protected void terminated() {
+		JmxSupport.unregister(telemetryObjectName);
+		super.terminated();
+	}
 
-		public ContextAwareRunnable(Runnable task, Exception exception, String clientThreadName) {
-			this.task = task;
+	private void onStart(Runnable r) {
+		if (r instanceof TimedTask) {
+			((TimedTask) r).markStarted(System.nanoTime());
+		}
+		peakRunningCount.accumulate(runningCount.incrementAndGet());
+	}
+
+	private void onFinish(Runnable r, boolean failed) {
+		runningCount.decrementAndGet();
+		if (!(r instanceof TimedTask)) {
+			return;
+		}
+
+		TimedTask task = (TimedTask) r;
+		long startNanos = task.startNanos();
+		TaskTimings timings = timingsOf(task.taskClass());
+		timings.queueWait.record(startNanos - task.submitNanos());
+		timings.runTime.record(System.nanoTime() - startNanos);
+		if (failed || task.isFailed()) {
+			timings.failures.increment();
+		}
+	}
+
+	private TaskTimings timingsOf(Class<?> taskClass) {
+		String name = taskClass.getName();
+		TaskTimings timings = taskTimings.get(name);
+		if (null != timings) {
+			return timings;
+		}
+		if (taskTimings.size() >= MAX_TASK_CLASSES) {
+			name = OTHER_TASKS;
+		}
+		timings = new TaskTimings();
+		TaskTimings existing = taskTimings.putIfAbsent(name, timings);
+		return null == existing ? timings : existing;
+	}
+
+	/**
+	 * @return 线程池当前的运行状况及各类任务的耗时分布
+	 */
+	public ExecutorTelemetrySnapshot telemetrySnapshot() {
+		List<TaskTimingSnapshot> timings = new ArrayList<TaskTimingSnapshot>(taskTimings.size());
+		for (Map.Entry<String, TaskTimings> entry : taskTimings.entrySet()) {
+			TaskTimings value = entry.getValue();
+			timings.add(new TaskTimingSnapshot(entry.getKey(), value.failures.sum(),
+					value.queueWait.snapshot(), value.runTime.snapshot()));
+		}
+		return new ExecutorTelemetrySnapshot(getPoolSize(), getCorePoolSize(), getMaximumPoolSize(),
+				getLargestPoolSize(), getActiveCount(), (int) peakRunningCount.get(), getQueue().size(),
+				getCompletedTaskCount(), rejectedCount.sum(), callerRunsCount.sum(), timings);
+	}
+
+	/**
+	 * 重新开始统计耗时分布、拒绝次数与同时执行的任务数的最大值
+	 */
+	public void resetTelemetry() {
+		taskTimings.clear();
+		rejectedCount.reset();
+		callerRunsCount.reset();
+		peakRunningCount.reset();
+	}
+
+	/**
+	 * 将该线程池的运行状况以MXBean的形式注册到平台MBeanServer，线程池终止时自动注销
+	 * @param name
+	 *          MBean名称，ObjectName为com.orrin.util.concurrent:type=TraceThreadPoolExecutor,name="name"
+	 * @return
+	 * @throws JMException
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ExecutorTelemetryMXBean mbean = new ExecutorTelemetryMXBean() {
+			@Override
+			public ExecutorTelemetrySnapshot getTelemetry() {
+				return telemetrySnapshot();
+			}
+
+			@Override
+			public void resetTelemetry() {
+				TraceThreadPoolExecutor.this.resetTelemetry();
+			}
+		};
+		telemetryObjectName = JmxSupport.register(mbean, "TraceThreadPoolExecutor", name);
+		return telemetryObjectName;
+	}
+
+	@Override
+	public int getWorkerCount() {
+		return getMaximumPoolSize();
+	}
+
+	/**
+	 * 调整maxPoolSize，corePoolSize大于新值时一并调低；多余的线程在空闲时退出
+	 */
+	@Override
+	public synchronized void setWorkerCount(int workerCount) {
+		if (workerCount <= 0) {
+			throw new IllegalArgumentException("workerCount should be positive!");
+		}
+		//ThreadPoolExecutor要求任意时刻corePoolSize不大于maximumPoolSize
+		if (workerCount >= getMaximumPoolSize()) {
+			setMaximumPoolSize(workerCount);
+		} else {
+			if (getCorePoolSize() > workerCount) {
+				setCorePoolSize(workerCount);
+			}
+			setMaximumPoolSize(workerCount);
+		}
+	}
+
+	@Override
+	public int getActiveWorkerCount() {
+		return getActiveCount();
+	}
+
+	@Override
+	public int getQueueSize() {
+		return getQueue().size();
+	}
+
+	/**
+	 * @return 被拒绝的任务个数，resetTelemetry后重新计数
+	 */
+	@Override
+	public long getSaturationCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * 同一类任务的耗时统计
+	 */
+	private static class TaskTimings {
+		final LatencyHistogram queueWait = new LatencyHistogram();
+		final LatencyHistogram runTime = new LatencyHistogram();
+		final LongAdder failures = new LongAdder();
+	}
+
+	/**
+	 * 统计被拒绝的任务；处理策略为CallerRunsPolicy时，同时统计由提交线程执行的任务的耗时
+	 */
+	private class TelemetryRejectedExecutionHandler implements RejectedExecutionHandler {
+		private final RejectedExecutionHandler delegate;
+
+		TelemetryRejectedExecutionHandler(RejectedExecutionHandler delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			rejectedCount.increment();
+			if (!(delegate instanceof CallerRunsPolicy) || executor.isShutdown()) {
+				delegate.rejectedExecution(r, executor);
+				return;
+			}
+
+			callerRunsCount.increment();
+			onStart(r);
+			boolean completed = false;
+			try {
+				delegate.rejectedExecution(r, executor);
+				completed = true;
+			} finally {
+				onFinish(r, !completed);
+			}
+		}
+	}
+
+	/**
+	 * 由线程池包装后的任务，记录提交与开始执行的时刻
+	 */
+	interface TimedTask {
+		Class<?> taskClass();
+
+		long submitNanos();
+
+		void markStarted(long nanos);
+
+		long startNanos();
+
+		boolean isFailed();
+	}
+
+	/**
+	 * 按当前的TraceMode采集提交任务的调用栈
+	 * @return 不采集时返回null
+	 */
+	private ClientTrace clientTrace() {
+		switch (traceMode) {
+			case OFF:
+				return null;
+			case SAMPLED:
+				if (0 != ThreadLocalRandom.current().nextInt(sampleInterval)) {
+					return null;
+				}
+				return new ClientTrace(new Exception("Client stack trace"), null);
+			case CALLER:
+				Object walker = stackWalker;
+				if (null != walker) {
+					return new ClientTrace(null, StackWalkerSupport.callerFrames(walker, callerFrames));
+				}
+				return new ClientTrace(new Exception("Client stack trace"), null);
+			default:
+				return new ClientTrace(new Exception("Client stack trace"), null);
+		}
+	}
+
+	/**
+	 * 提交任务的线程及其调用栈
+	 */
+	static class ClientTrace {
+		private final String clientThreadName = Thread.currentThread().getName();
+		private final Exception exception;
+		//StackWalker.StackFrame，仅在打印时才转换为StackTraceElement
+		private final Object[] frames;
+
+		ClientTrace(Exception exception, Object[] frames) {
 			this.exception = exception;
-			this.clientThreadName = clientThreadName;
+			this.frames = frames;
+		}
+
+		Exception toException() {
+			if (null != exception) {
+				return exception;
+			}
+			Exception e = new Exception("Client stack trace (" + clientThreadName + ")");
+			e.setStackTrace(StackWalkerSupport.toStackTrace(frames));
+			return e;
+		}
+
+		void print(Throwable cause) {
+			toException().printStackTrace();
+			cause.printStackTrace();
+		}
+	}
+
+	static class ContextAwareRunnable implements Runnable, TimedTask {
+		private final Runnable task;
+		private final ClientTrace trace;
+		private final long submitNanos = System.nanoTime();
+		private long startNanos;
+
+		public ContextAwareRunnable(Runnable task, ClientTrace trace) {
+			this.task = task;
+			this.trace = trace;
 		}
 
 		@Override
 		public void run(){
 			try {
 				task.run();
-			} catch (Exception e) {
-				exception.printStackTrace();
-				e.printStackTrace();
+			} catch (RuntimeException e) {
+				printTrace(e);
 				throw e;
-			} finally {
+			} catch (Error e) {
+				printTrace(e);
+				throw e;
+			}
+		}
 
+		private void printTrace(Throwable e) {
+			if (null != trace) {
+				trace.print(e);
 			}
 		}
+
+		@Override
+		public Class<?> taskClass() {
+			return task.getClass();
+		}
+
+		@Override
+		public long submitNanos() {
+			return submitNanos;
+		}
+
+		@Override
+		public void markStarted(long nanos) {
+			this.startNanos = nanos;
+		}
+
+		@Override
+		public long startNanos() {
+			return startNanos;
+		}
+
+		@Override
+		public boolean isFailed() {
+			//执行失败时异常会抛给afterExecute
+			return false;
+		}
 	}
 
-	static class ContextAwareCallable<T> implements Callable<T> {
-		private Callable<T> task;
-		private Exception exception;
+	/**
+	 * submit提交的任务，失败时打印提交方的调用栈
+	 */
+	static class TraceFutureTask<T> extends FutureTask<T> implements TimedTask {
+		private final Class<?> taskClass;
+		private final ClientTrace trace;
+		private final long submitNanos = System.nanoTime();
+		private long startNanos;
+		private boolean failed;
 
-		public ContextAwareCallable(Callable<T> task, Exception exception) {
-			this.task = task;
-			this.exception = exception;
+		TraceFutureTask(Callable<T> callable, Class<?> taskClass, ClientTrace trace) {
+			super(callable);
+			this.taskClass = taskClass;
+			this.trace = trace;
+		}
+
+		@Override
+		protected void setException(Throwable t) {
+			failed = true;
+			if (null != trace) {
+				trace.print(t);
+			}
+			super.setException(t);
+		}
+
+		@Override
+		public Class<?> taskClass() {
+			return taskClass;
+		}
+
+		@Override
+		public long submitNanos() {
+			return submitNanos;
+		}
+
+		@Override
+		public void markStarted(long nanos) {
+			this.startNanos = nanos;
 		}
 
 		@Override
-		public T call() throws Exception {
+		public long startNanos() {
+			return startNanos;
+		}
+
+		@Override
+		public boolean isFailed() {
+			return failed;
+		}
+	}
+
+	/**
+	 * 通过反射使用Java 9引入的StackWalker，使本类在Java 8上仍可编译和运行
+	 */
+	static final class StackWalkerSupport {
+		//线程池自身的栈帧个数的估计值，用于确定首批获取的栈帧数
+		private static final int EXECUTOR_FRAMES = 8;
+
+		//(Set, int)StackWalker
+		private static final MethodHandle GET_INSTANCE;
+		//(StackWalker, Function)Object
+		private static final MethodHandle WALK;
+		//(StackFrame)String
+		private static final MethodHandle GET_CLASS_NAME;
+		//(StackFrame)StackTraceElement
+		private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+
+		static {
+			MethodHandle getInstance = null;
+			MethodHandle walk = null;
+			MethodHandle getClassName = null;
+			MethodHandle toStackTraceElement = null;
 			try {
-				return task.call();
+				Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+				Class<?> frameClass = Class.forName("java.lang.StackWalker$StackFrame");
+				//walk为caller-sensitive方法，不能使用publicLookup
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				getInstance = lookup.findStatic(walkerClass, "getInstance",
+						MethodType.methodType(walkerClass, Set.class, int.class))
+						.asType(MethodType.methodType(Object.class, Set.class, int.class));
+				walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+						.asType(MethodType.methodType(Object.class, Object.class, Function.class));
+				getClassName = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class))
+						.asType(MethodType.methodType(String.class, Object.class));
+				toStackTraceElement = lookup.findVirtual(frameClass, "toStackTraceElement",
+						MethodType.methodType(StackTraceElement.class))
+						.asType(MethodType.methodType(StackTraceElement.class, Object.class));
 			} catch (Exception e) {
-				exception.printStackTrace();
-				e.printStackTrace();
-				throw e;
-			} finally {
+				getInstance = null;
+			}
+			GET_INSTANCE = getInstance;
+			WALK = walk;
+			GET_CLASS_NAME = getClassName;
+			TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+		}
+
+		private StackWalkerSupport() {
+		}
+
+		/**
+		 * @return StackWalker实例，StackWalker不可用时返回null
+		 */
+		static Object newWalker(int callerFrames) {
+			if (null == GET_INSTANCE) {
+				return null;
+			}
+			try {
+				//StackWalker分批获取栈帧，首批足以覆盖所需的栈帧时开销与调用栈的深度无关
+				return (Object) GET_INSTANCE.invokeExact(
+						(Set) Collections.emptySet(), callerFrames + EXECUTOR_FRAMES);
+			} catch (Throwable t) {
+				return null;
+			}
+		}
+
+		/**
+		 * 跳过线程池自身的栈帧后，采集至多limit个调用方栈帧
+		 */
+		static Object[] callerFrames(Object walker, final int limit) {
+			Function<Stream<Object>, Object[]> collector = new Function<Stream<Object>, Object[]>() {
+				@Override
+				public Object[] apply(Stream<Object> stream) {
+					Object[] frames = new Object[limit];
+					int count = 0;
+					boolean inExecutor = true;
+					Iterator<Object> iterator = stream.iterator();
+					while (count < limit && iterator.hasNext()) {
+						Object frame = iterator.next();
+						if (inExecutor && isExecutorFrame(frame)) {
+							continue;
+						}
+						inExecutor = false;
+						frames[count++] = frame;
+					}
+					if (count < limit) {
+						Object[] trimmed = new Object[count];
+						System.arraycopy(frames, 0, trimmed, 0, count);
+						return trimmed;
+					}
+					return frames;
+				}
+			};
+
+			try {
+				return (Object[]) (Object) WALK.invokeExact(walker, (Function) collector);
+			} catch (Throwable t) {
+				return new Object[0];
+			}
+		}
+
+		private static boolean isExecutorFrame(Object frame) {
+			String className;
+			try {
+				className = (String) GET_CLASS_NAME.invokeExact(frame);
+			} catch (Throwable t) {
+				return false;
+			}
+			return className.startsWith(TraceThreadPoolExecutor.class.getName())
+					|| className.startsWith("java.util.concurrent.");
+		}
 
+		static StackTraceElement[] toStackTrace(Object[] frames) {
+			StackTraceElement[] elements = new StackTraceElement[frames.length];
+			for (int i = 0; i < frames.length; i++) {
+				try {
+					elements[i] = (StackTraceElement) TO_STACK_TRACE_ELEMENT.invokeExact(frames[i]);
+				} catch (Throwable t) {
+					elements[i] = new StackTraceElement("?", "?", null, -1);
+				}
 			}
+			return elements;
 		}
 	}
 
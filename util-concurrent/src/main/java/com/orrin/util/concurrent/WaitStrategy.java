@@ -0,0 +1,94 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 对无锁队列在条件不满足（队列空或满）时等待方式的抽象
+ * 实现类不持有状态，由调用方传入已连续等待的次数，因此同一实例可以被多个线程共享
+ *
+ * @author orrin on 2026-10-17
+ */
+public interface WaitStrategy {
+
+    /**
+     * 执行一次等待
+     * @param counter
+     *          调用方已连续等待的次数，从0开始
+     */
+    public void idle(int counter);
+
+    /**
+     * 忙等：不让出CPU，延迟最低，但会持续占用一个CPU核心
+     */
+    public static class BusySpin implements WaitStrategy {
+        @Override
+        public void idle(int counter) {
+            //什么也不做
+        }
+    }
+
+    /**
+     * 先自旋若干次，之后每次等待都调用Thread.yield让出CPU
+     */
+    public static class Yielding implements WaitStrategy {
+        private final int spinTries;
+
+        public Yielding() {
+            this(100);
+        }
+
+        public Yielding(int spinTries) {
+            this.spinTries = spinTries;
+        }
+
+        @Override
+        public void idle(int counter) {
+            if(counter >= spinTries){
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 依次经历自旋、让出CPU、指数退避的park三个阶段
+     * park的时长从minParkNanos开始逐次翻倍，直至maxParkNanos
+     */
+    public static class ParkingBackoff implements WaitStrategy {
+        private final int spinTries;
+        private final int yieldTries;
+        private final long minParkNanos;
+        private final long maxParkNanos;
+
+        public ParkingBackoff() {
+            this(100, 100, 1000L, 1000000L);
+        }
+
+        public ParkingBackoff(int spinTries, int yieldTries, long minParkNanos, long maxParkNanos) {
+            if(minParkNanos <= 0 || maxParkNanos < minParkNanos){
+                throw new IllegalArgumentException("invalid park nanos!");
+            }
+            this.spinTries = spinTries;
+            this.yieldTries = yieldTries;
+            this.minParkNanos = minParkNanos;
+            this.maxParkNanos = maxParkNanos;
+        }
+
+        @Override
+        public void idle(int counter) {
+            if(counter < spinTries){
+                return;
+            }
+            if(counter < spinTries + yieldTries){
+                Thread.yield();
+                return;
+            }
+
+            int shift = Math.min(counter - spinTries - yieldTries, 30);
+            long parkNanos = minParkNanos << shift;
+            if(parkNanos <= 0 || parkNanos > maxParkNanos){
+                parkNanos = maxParkNanos;
+            }
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.orrin.util.concurrent;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 
 /**
  * 基于工作者线程的Pipe实现类
  * 提交到该Pipe的任务由指定个数的工作者线程共同处理
  * 该类使用了两阶段终止模式（Two-phase Termination）
+ * 当batchSize大于1时，工作者线程每次从队列中取出至多batchSize个元素（或等待至多maxBatchWaitMicros微秒），
+ * 并以批次的形式交给被修饰的Pipe实例处理
+ * 指定ReorderBuffer时为保序模式：工作者线程依次从工作队列中取出元素并分配序号，
+ * 被修饰的Pipe实例的输出经ReorderBuffer重排序后按出队顺序交给下一个Pipe实例
+ * 工作者线程个数可通过setWorkerCount在运行期间调整：新增的线程立即启动；
+ * 需要退出的线程在处理完手头的元素后、取下一个元素之前退出，不会丢失已出队的元素
+ * 工作队列实现AcknowledgingQueue时（如MappedFileBlockingQueue），元素处理完成或交给LeftoverHandler之后才被确认；
+ * 构造时工作队列中已有的元素（如重启后恢复的元素）同样计入在途元素
  * @author orrin on 2018-11-23
  *
  * @param <IN>
@@ -17,73 +33,472 @@ import java.util.concurrent.TimeUnit;
  * @param <OUT>
  *     输出类型
  */
-public class WorkThreadPipeDecorator<IN, OUT> implements Pipe<IN, OUT> {
+public class WorkThreadPipeDecorator<IN, OUT> implements Pipe<IN, OUT>, MeasurablePipe, ResizablePool, DrainablePipe {
+    //空闲的工作者线程每隔该时间检查一次是否需要退出
+    private static final long IDLE_POLL_MILLIS = 100;
+
     protected final BlockingQueue<IN> workQueue;
-    protected final Set<AbstractTerminatableThread> workerThreads = new HashSet<AbstractTerminatableThread>();
+    //工作队列需要确认时不为null
+    private final AcknowledgingQueue<IN> acknowledgingQueue;
+    protected final Set<AbstractTerminatableThread> workerThreads =
+            Collections.newSetFromMap(new ConcurrentHashMap<AbstractTerminatableThread, Boolean>());
     protected final TerminationToken terminationToken = new TerminationToken();
 
     private final Pipe<IN, OUT> delegate;
+    private final PipeMetrics pipeMetrics;
+
+    //每个批次的最大元素个数，1表示不做批量处理
+    private final int batchSize;
+    //凑批时最多等待的时间（微秒）
+    private final long maxBatchWaitMicros;
+
+    //保序模式下的重排序缓冲区，null表示不保序
+    private final ReorderBuffer reorderBuffer;
+    //保序模式下使出队与分配序号成为一个原子操作
+    private final ReentrantLock takeLock = new ReentrantLock();
+
+    //目标工作者线程个数
+    private volatile int workerCount;
+    //尚未退出的待退役线程个数
+    private final AtomicInteger pendingRetirements = new AtomicInteger();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder saturationCount = new LongAdder();
+    private boolean started;
+
+    //排空时放弃的元素交给该handler，非null表示该阶段已被放弃
+    private volatile LeftoverHandler leftoverHandler;
+    private volatile String stageName;
+    private final LongAdder leftoverCount = new LongAdder();
 
     public WorkThreadPipeDecorator(Pipe<IN, OUT> delegate, int workerCount){
         this(new SynchronousQueue<IN>(), delegate, workerCount);
     }
 
     public WorkThreadPipeDecorator(BlockingQueue<IN> workQueue, Pipe<IN, OUT> delegate, int workerCount) {
+        this(workQueue, delegate, workerCount, 1, 0);
+    }
+
+    /**
+     * 使用预分配的无锁环形队列作为工作队列，队列满或空时按照waitStrategy等待
+     */
+    public WorkThreadPipeDecorator(Pipe<IN, OUT> delegate, int workerCount, int ringBufferSize, WaitStrategy waitStrategy){
+        this(new RingBufferBlockingQueue<IN>(ringBufferSize, waitStrategy), delegate, workerCount);
+    }
+
+    public WorkThreadPipeDecorator(Pipe<IN, OUT> delegate, int workerCount, int batchSize, long maxBatchWaitMicros){
+        this(new LinkedBlockingQueue<IN>(Math.max(1, workerCount) * Math.max(1, batchSize)),
+                delegate, workerCount, batchSize, maxBatchWaitMicros);
+    }
+
+    public WorkThreadPipeDecorator(BlockingQueue<IN> workQueue, Pipe<IN, OUT> delegate, int workerCount,
+                                   int batchSize, long maxBatchWaitMicros) {
+        this(workQueue, delegate, workerCount, batchSize, maxBatchWaitMicros, null);
+    }
+
+    /**
+     * 保序模式：多个工作者线程并行处理，输出仍按输入顺序交给下一个Pipe实例
+     */
+    public WorkThreadPipeDecorator(Pipe<IN, OUT> delegate, int workerCount, ReorderBuffer reorderBuffer){
+        this(new SynchronousQueue<IN>(), delegate, workerCount, reorderBuffer);
+    }
+
+    public WorkThreadPipeDecorator(BlockingQueue<IN> workQueue, Pipe<IN, OUT> delegate, int workerCount,
+                                   ReorderBuffer reorderBuffer) {
+        this(workQueue, delegate, workerCount, 1, 0, reorderBuffer);
+        if(null == reorderBuffer){
+            throw new NullPointerException("reorderBuffer");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private WorkThreadPipeDecorator(BlockingQueue<IN> workQueue, Pipe<IN, OUT> delegate, int workerCount,
+                                    int batchSize, long maxBatchWaitMicros, ReorderBuffer reorderBuffer) {
         if(workerCount <= 0){
             throw new IllegalArgumentException("workerCount should be positive!");
         }
+        if(batchSize <= 0){
+            throw new IllegalArgumentException("batchSize should be positive!");
+        }
 
         this.workQueue = workQueue;
+        this.acknowledgingQueue = workQueue instanceof AcknowledgingQueue ? (AcknowledgingQueue<IN>) workQueue : null;
         this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxBatchWaitMicros = maxBatchWaitMicros;
+        this.reorderBuffer = reorderBuffer;
+        //工作队列中已有的元素（如MappedFileBlockingQueue重启后恢复的元素）同样由工作者线程处理并release，须先登记
+        int queued = workQueue.size();
+        if(queued > 0){
+            terminationToken.reserve(queued);
+        }
+        this.pipeMetrics = delegate instanceof MeasurablePipe
+                ? ((MeasurablePipe) delegate).getPipeMetrics() : new PipeMetrics();
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_QUEUE_DEPTH, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return WorkThreadPipeDecorator.this.workQueue.size();
+            }
+        });
+        pipeMetrics.registerGauge(PipeMetrics.GAUGE_IN_FLIGHT, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return WorkThreadPipeDecorator.this.terminationToken.reservationCount();
+            }
+        });
+        if(null != reorderBuffer){
+            reorderBuffer.registerGauges(pipeMetrics);
+        }
+
+        this.workerCount = workerCount;
         for(int i=0; i<workerCount; i++){
-            workerThreads.add(new AbstractTerminatableThread() {
-
-                @Override
-                protected void doRun() throws Exception {
-                    try {
-                        dispatch();
-                    }finally {
-                        terminationToken.reservations.decrementAndGet();
-                    }
-                }
-            });
+            workerThreads.add(new Worker());
+        }
+    }
+
+    /**
+     * 工作者线程
+     */
+    private class Worker extends AbstractTerminatableThread {
+
+        @Override
+        protected void doRun() throws Exception {
+            if(retireIfRequested()){
+                //下一次循环时退出
+                terminationToken.setToShutDown(true);
+                return;
+            }
+
+            if(null != reorderBuffer){
+                dispatchOrdered();
+            }else if(batchSize > 1){
+                dispatchBatch();
+            }else{
+                dispatch();
+            }
+        }
+
+        @Override
+        protected void doCleanup(Exception cause) {
+            workerThreads.remove(this);
+        }
+    }
+
+    private boolean retireIfRequested() {
+        for(;;){
+            int pending = pendingRetirements.get();
+            if(pending <= 0){
+                return false;
+            }
+            if(pendingRetirements.compareAndSet(pending, pending - 1)){
+                return true;
+            }
         }
     }
 
     private void dispatch() throws InterruptedException {
-        IN input = workQueue.take();
-        delegate.process(input);
+        IN input = workQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if(null == input){
+            return;
+        }
+        if(null != leftoverHandler){
+            handOver(input);
+            acknowledge(input);
+            terminationToken.release();
+            return;
+        }
+
+        busyWorkers.incrementAndGet();
+        try {
+            delegate.process(input);
+        } finally {
+            busyWorkers.decrementAndGet();
+            completedCount.increment();
+            acknowledge(input);
+            terminationToken.release();
+        }
+    }
+
+    private void dispatchOrdered() throws InterruptedException {
+        IN input;
+        long sequence;
+        takeLock.lockInterruptibly();
+        try {
+            input = workQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if(null == input){
+                return;
+            }
+            //元素已出队，等待期间不再响应中断
+            sequence = reorderBuffer.acquireUninterruptibly();
+        } finally {
+            takeLock.unlock();
+        }
+        if(null != leftoverHandler){
+            reorderBuffer.skip(sequence);
+            handOver(input);
+            acknowledge(input);
+            terminationToken.release();
+            return;
+        }
+
+        busyWorkers.incrementAndGet();
+        reorderBuffer.begin();
+        try {
+            delegate.process(input);
+        } finally {
+            try {
+                reorderBuffer.complete(sequence);
+            } finally {
+                busyWorkers.decrementAndGet();
+                completedCount.increment();
+                acknowledge(input);
+                terminationToken.release();
+            }
+        }
+    }
+
+    private void dispatchBatch() throws InterruptedException {
+        IN first = workQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if(null == first){
+            return;
+        }
+        List<IN> batch = new ArrayList<IN>(batchSize);
+        batch.add(first);
+
+        InterruptedException interrupted = null;
+        try {
+            QueueDrainer.drain(workQueue, batch, batchSize - 1, maxBatchWaitMicros, TimeUnit.MICROSECONDS);
+        } catch (InterruptedException e) {
+            //已经取出的元素仍需处理，处理完后再响应中断
+            interrupted = e;
+        }
+
+        if(null != leftoverHandler){
+            for(IN input : batch){
+                handOver(input);
+                acknowledge(input);
+            }
+            terminationToken.release(batch.size());
+        }else{
+            busyWorkers.incrementAndGet();
+            try {
+                delegate.processBatch(batch);
+            } finally {
+                busyWorkers.decrementAndGet();
+                completedCount.add(batch.size());
+                for(IN input : batch){
+                    acknowledge(input);
+                }
+                terminationToken.release(batch.size());
+            }
+        }
+
+        if(null != interrupted){
+            throw interrupted;
+        }
+    }
+
+    /**
+     * 返回被修饰Pipe实例的运行指标，并附加该阶段工作队列深度与在途元素个数
+     */
+    @Override
+    public PipeMetrics getPipeMetrics() {
+        return pipeMetrics;
+    }
+
+    public Pipe<IN, OUT> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return 每个批次的最大元素个数，1表示不做批量处理
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return 保序模式下的重排序缓冲区，不保序时返回null
+     */
+    public ReorderBuffer getReorderBuffer() {
+        return reorderBuffer;
     }
 
     @Override
     public void setNextPipe(Pipe<?, ?> nextPipe) {
-        delegate.setNextPipe(nextPipe);
+        if(null != reorderBuffer){
+            reorderBuffer.setNextPipe(nextPipe);
+            delegate.setNextPipe(reorderBuffer);
+        }else{
+            delegate.setNextPipe(nextPipe);
+        }
     }
 
     @Override
     public void process(IN input) throws InterruptedException {
-        workQueue.put(input);
-        terminationToken.reservations.incrementAndGet();
+        enqueue(input);
+    }
+
+    @Override
+    public void processBatch(List<IN> inputs) throws InterruptedException {
+        for(IN input : inputs){
+            enqueue(input);
+        }
+    }
+
+    private void enqueue(IN input) throws InterruptedException {
+        if(null != leftoverHandler){
+            handOver(input);
+            return;
+        }
+        //先登记再入队，使工作者线程的release总是发生在对应的reserve之后
+        terminationToken.reserve();
+        if(!workQueue.offer(input)){
+            //没有空闲的工作者线程或队列已满，提交方需要等待
+            saturationCount.increment();
+            try {
+                workQueue.put(input);
+            } catch (InterruptedException e) {
+                terminationToken.release();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @Override
+    public synchronized void setWorkerCount(int workerCount) {
+        if(workerCount <= 0){
+            throw new IllegalArgumentException("workerCount should be positive!");
+        }
+
+        int delta = workerCount - this.workerCount;
+        //先撤销尚未生效的退役请求
+        while(delta > 0){
+            int pending = pendingRetirements.get();
+            if(pending <= 0){
+                break;
+            }
+            if(pendingRetirements.compareAndSet(pending, pending - 1)){
+                delta--;
+            }
+        }
+
+        if(delta > 0){
+            for(int i=0; i<delta; i++){
+                Worker worker = new Worker();
+                workerThreads.add(worker);
+                if(started){
+                    worker.start();
+                }
+            }
+        }else if(delta < 0){
+            pendingRetirements.addAndGet(-delta);
+        }
+        this.workerCount = workerCount;
+    }
+
+    @Override
+    public int getActiveWorkerCount() {
+        return busyWorkers.get();
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return completedCount.sum();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return workQueue.size();
+    }
+
+    @Override
+    public long getSaturationCount() {
+        return saturationCount.sum();
     }
 
     @Override
     public void init(PipeContext pipeCtx) {
         delegate.init(pipeCtx);
-        for(AbstractTerminatableThread thread : workerThreads){
-            thread.start();
+        pipeCtx.registerEntry(delegate, this);
+        synchronized (this){
+            started = true;
+            for(AbstractTerminatableThread thread : workerThreads){
+                thread.start();
+            }
+        }
+    }
+
+    @Override
+    public boolean awaitDrained(long deadlineNanos) throws InterruptedException {
+        return terminationToken.awaitDrained(deadlineNanos);
+    }
+
+    @Override
+    public void abandon(String stageName, LeftoverHandler handler) {
+        this.stageName = stageName;
+        this.leftoverHandler = handler;
+
+        List<IN> pending = new ArrayList<IN>();
+        workQueue.drainTo(pending);
+        for(IN input : pending){
+            handOver(input);
+            acknowledge(input);
+        }
+        terminationToken.release(pending.size());
+    }
+
+    private void acknowledge(IN input) {
+        if(null != acknowledgingQueue){
+            acknowledgingQueue.acknowledge(input);
+        }
+    }
+
+    private void handOver(IN input) {
+        leftoverCount.increment();
+        try {
+            leftoverHandler.onLeftover(stageName, input);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
         }
     }
 
+    @Override
+    public long getInFlightCount() {
+        return terminationToken.reservationCount();
+    }
+
+    @Override
+    public long getLeftoverCount() {
+        return leftoverCount.sum();
+    }
+
     @Override
     public void shutdown(long timeout, TimeUnit unit) {
-        for(AbstractTerminatableThread thread : workerThreads){
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<AbstractTerminatableThread> threads = new ArrayList<AbstractTerminatableThread>(workerThreads);
+        //先通知所有线程停止，再在同一期限内等待，避免N个线程耗时N倍的timeout
+        for(AbstractTerminatableThread thread : threads){
             thread.terminate();
+        }
+        for(AbstractTerminatableThread thread : threads){
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if(remainingMillis <= 0){
+                break;
+            }
             try {
-                thread.join(TimeUnit.MILLISECONDS.convert(timeout, unit));
+                thread.join(remainingMillis);
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
         }
-        delegate.shutdown(timeout, unit);
+        delegate.shutdown(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.orrin.util.concurrent;
+
+/**
+ * 基于虚拟线程的可停止抽象线程，与AbstractTerminatableThread具有相同的两阶段终止语义
+ * 虚拟线程不能被继承，因此该类持有一个以自身为任务的虚拟线程，并提供start/join等与Thread对应的方法
+ *
+ * 模式角色 两阶段终止模式（Two-phase Termination）
+ * @author orrin on 2026-10-17
+ */
+public abstract class AbstractTerminatableVirtualThread implements Terminatable, Runnable {
+    public final TerminationToken terminationToken;
+
+    private final Thread thread;
+
+    public AbstractTerminatableVirtualThread() {
+        this(new TerminationToken());
+    }
+
+    /**
+     * 线程间共享的线程终止标志实例
+     *
+     * @param terminationToken
+     */
+    public AbstractTerminatableVirtualThread(TerminationToken terminationToken) {
+        this(terminationToken, "TerminatableVirtualThread");
+    }
+
+    public AbstractTerminatableVirtualThread(TerminationToken terminationToken, String name) {
+        this.terminationToken = terminationToken;
+        this.thread = Thread.ofVirtual().name(name).unstarted(this);
+        terminationToken.register(this);
+    }
+
+    /**
+     * 留给子类实现其线程处理逻辑
+     *
+     * @throws Exception
+     */
+    protected abstract void doRun() throws Exception;
+
+    /**
+     * 留给子类实现，用于实现线程停止后的一些清理工作
+     */
+    protected void doCleanup(Exception cause) {
+    }
+
+    /**
+     * 留给子类实现，用于实现线程停止所需的操作
+     */
+    protected void doTerminate() {
+    }
+
+    @Override
+    public void run() {
+        Exception ex = null;
+        try {
+            while (true) {
+                //在执行线程的处理逻辑前先判断线程停止的标志
+                if (terminationToken.isToShutDown() && terminationToken.isDrained()) {
+                    break;
+                }
+                doRun();
+            }
+        } catch (Exception e) {
+            //使得线程能够响应interrupt调用而退出
+            ex = e;
+        } finally {
+            try {
+                doCleanup(ex);
+            } finally {
+                terminationToken.notifyThreadTermination(this);
+            }
+        }
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public boolean isAlive() {
+        return thread.isAlive();
+    }
+
+    public void join() throws InterruptedException {
+        thread.join();
+    }
+
+    public void join(long millis) throws InterruptedException {
+        thread.join(millis);
+    }
+
+    @Override
+    public void terminate() {
+        terminationToken.setToShutDown(true);
+        try {
+            doTerminate();
+        } finally {
+            //若无待处理的任务，则试图强制终止线程
+            if (terminationToken.isDrained()) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    public void terminate(boolean waitUtilThreadTerminated) {
+        terminate();
+        if (waitUtilThreadTerminated) {
+            try {
+                this.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
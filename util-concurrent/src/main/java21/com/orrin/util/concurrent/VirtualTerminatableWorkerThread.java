@@ -0,0 +1,76 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 基于虚拟线程的串行线程封闭（Serial Thread Confinement）模式WorkerThead参与者
+ * 与TerminatableWorkerThread相同，只是工作者线程为虚拟线程，任务阻塞在I/O上时不占用平台线程
+ * @author orrin on 2026-10-17
+ *
+ * @param <T>
+ *      Serializer向WorkerThead所提交的任务对应的类型
+ * @param <V>
+ *      任务处理结果的类型
+ */
+public class VirtualTerminatableWorkerThread<T, V> extends AbstractTerminatableVirtualThread {
+    private final BlockingQueue<Runnable> workQueue;
+
+    //负责正真执行任务的对象
+    private final TaskProcssor<T, V> taskProcssor;
+
+    public VirtualTerminatableWorkerThread(BlockingQueue<Runnable> workQueue, TaskProcssor<T, V> taskProcssor) {
+        super(new TerminationToken(), "VirtualTerminatableWorkerThread");
+        this.workQueue = workQueue;
+        this.taskProcssor = taskProcssor;
+    }
+
+    /**
+     * 接收并行任务，并将其穿行化
+     * @param task
+     *        任务
+     * @return 可借以获取任务处理结果的Promise
+     * @throws InterruptedException
+     */
+    public Future<V> submit(final T task) throws InterruptedException{
+        Callable<V> callable = new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return taskProcssor.doProcess(task);
+            }
+        };
+
+        FutureTask<V> ft = new FutureTask<V>(callable);
+        enqueue(ft);
+        return ft;
+    }
+
+    private void enqueue(Runnable ft) throws InterruptedException {
+        //先登记再入队，使工作者线程的release总是发生在对应的reserve之后
+        terminationToken.reserve();
+        try {
+            workQueue.put(ft);
+        } catch (InterruptedException e) {
+            terminationToken.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 执行任务的处理逻辑
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void doRun() throws Exception {
+        Runnable ft = workQueue.take();
+
+        try {
+            ft.run();
+        } finally{
+            terminationToken.release();
+        }
+    }
+}
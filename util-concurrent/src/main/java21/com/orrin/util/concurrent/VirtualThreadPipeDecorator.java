@@ -0,0 +1,51 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个输入元素由一个新的虚拟线程处理的Pipe实现类
+ * 适用于以阻塞I/O为主的处理阶段，无需再按平台线程数估算工作者线程个数
+ * 两阶段终止、在途元素限制及运行指标均沿用ThreadPoolPipeDecorator的实现；
+ * 由于虚拟线程几乎没有创建成本，maxInFlight通常用于保护下游资源（如连接数）而不是线程数
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ */
+public class VirtualThreadPipeDecorator<IN, OUT> extends ThreadPoolPipeDecorator<IN, OUT> {
+    private final ExecutorService virtualThreadExecutor;
+
+    public VirtualThreadPipeDecorator(Pipe<IN, OUT> delegate) {
+        this(delegate, 0);
+    }
+
+    /**
+     * @param maxInFlight
+     *          该阶段允许的最大在途元素个数，小于等于0表示不限制
+     */
+    public VirtualThreadPipeDecorator(Pipe<IN, OUT> delegate, int maxInFlight) {
+        this(delegate, newVirtualThreadExecutor(), maxInFlight);
+    }
+
+    private VirtualThreadPipeDecorator(Pipe<IN, OUT> delegate, ExecutorService executorService, int maxInFlight) {
+        super(delegate, executorService, maxInFlight, AdmissionPolicy.BLOCK, 0, TimeUnit.MILLISECONDS);
+        this.virtualThreadExecutor = executorService;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        ThreadFactory factory = Thread.ofVirtual().name("VirtualThreadPipe-", 0).factory();
+        return Executors.newThreadPerTaskExecutor(factory);
+    }
+
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) {
+        //先等待在途元素处理完毕（两阶段终止），再关闭该阶段独占的执行器
+        super.shutdown(timeout, unit);
+        virtualThreadExecutor.shutdown();
+    }
+}
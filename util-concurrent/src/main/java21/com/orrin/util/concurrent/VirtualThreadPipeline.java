@@ -0,0 +1,38 @@
+package com.orrin.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 支持以虚拟线程执行处理阶段的SimplePipeline
+ * 仅在以jdk21 profile构建时提供，Java 8用户继续使用SimplePipeline
+ * @author orrin on 2026-10-17
+ *
+ * @param <IN>
+ *     输入类型
+ * @param <OUT>
+ *     输出类型
+ */
+public class VirtualThreadPipeline<IN, OUT> extends SimplePipeline<IN, OUT> {
+
+    public VirtualThreadPipeline() {
+        super();
+    }
+
+    public VirtualThreadPipeline(ExecutorService helperService) {
+        super(helperService);
+    }
+
+    /**
+     * 添加一个由虚拟线程处理的阶段，每个输入元素使用一个新的虚拟线程
+     */
+    public <INPUT, OUTPUT> void addAsVirtualThreadPipe(Pipe<INPUT, OUTPUT> delegate) {
+        addPipe(new VirtualThreadPipeDecorator<INPUT, OUTPUT>(delegate));
+    }
+
+    /**
+     * 添加一个由虚拟线程处理的阶段，且该阶段最多允许maxInFlight个元素同时处理
+     */
+    public <INPUT, OUTPUT> void addAsVirtualThreadPipe(Pipe<INPUT, OUTPUT> delegate, int maxInFlight) {
+        addPipe(new VirtualThreadPipeDecorator<INPUT, OUTPUT>(delegate, maxInFlight));
+    }
+}
@@ -0,0 +1,89 @@
+package com.orrin.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author orrin on 2026-10-18
+ */
+public class GraphPipelineTest {
+    private ResilientPipeContext pipeCtx;
+
+    @Before
+    public void setUp() {
+        pipeCtx = new ResilientPipeContext(16);
+        pipeCtx.setDefaultRetryPolicy(RetryPolicy.exponential(3, 1, 10, TimeUnit.MILLISECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        pipeCtx.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 汇合节点丢弃的键以已收到的各上游输出进入死信队列，且不重试
+     */
+    @Test
+    public void evictedJoinKeyIsDeadLetteredWithBranchOutputs() throws Exception {
+        GraphPipeline<Integer> graph = new GraphPipeline<Integer>();
+        graph.addStage("source", identity(), 1);
+        graph.addStage("left", identity(), 1);
+        //右侧分支没有输出，汇合永远等不齐
+        graph.addStage("right", new AbsractPipe<Integer, Integer>() {
+            @Override
+            public Integer doProcess(Integer input) throws PipeException {
+                return null;
+            }
+        }, 1);
+        graph.addJoin("join", new KeyExtractor<Object, Object>() {
+            @Override
+            public Object extractKey(Object input) {
+                return input;
+            }
+        }, new JoinCombiner<Object, Object>() {
+            @Override
+            public Object combine(Object key, Map<String, Object> branchOutputs) throws PipeException {
+                return key;
+            }
+        }, 1, 2);
+        graph.connect("source", "left");
+        graph.connect("source", "right");
+        graph.connect("left", "join");
+        graph.connect("right", "join");
+        graph.init(pipeCtx);
+
+        for(int i=0; i<5; i++){
+            graph.process(i);
+        }
+        graph.shutdown(5, TimeUnit.SECONDS);
+
+        for(int i=0; i<3; i++){
+            DeadLetter deadLetter = pipeCtx.pollDeadLetter();
+            assertNotNull(deadLetter);
+            assertTrue(deadLetter.getCause() instanceof NonRetryablePipeException);
+            assertEquals(Collections.singletonMap("left", i), deadLetter.getInput());
+            assertEquals(0, deadLetter.getRetries());
+        }
+        assertNull(pipeCtx.pollDeadLetter());
+        assertEquals(0, pipeCtx.getRetryCount());
+    }
+
+    private static AbsractPipe<Integer, Integer> identity() {
+        return new AbsractPipe<Integer, Integer>() {
+            @Override
+            public Integer doProcess(Integer input) throws PipeException {
+                return input;
+            }
+        };
+    }
+}
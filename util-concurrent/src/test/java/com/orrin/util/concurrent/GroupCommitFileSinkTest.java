@@ -0,0 +1,80 @@
+package com.orrin.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author orrin on 2026-10-18
+ */
+public class GroupCommitFileSinkTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<PipeException> errors = Collections.synchronizedList(new ArrayList<PipeException>());
+    private GroupCommitFileSink<Integer> sink;
+
+    @Before
+    public void setUp() throws Exception {
+        //凑组等待足够长，使批次在等待落盘时被中断
+        sink = new GroupCommitFileSink<Integer>(temporaryFolder.newFile("sink.log"),
+                MappedFileBlockingQueueTest.INT_SERIALIZER, 64, 200, TimeUnit.MILLISECONDS);
+        sink.init(new PipeContext() {
+            @Override
+            public void handleError(PipeException exp) {
+                errors.add(exp);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        sink.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 等待落盘时被中断，批次中的每个记录分别以其自身为输入交由PipeContext处理
+     */
+    @Test
+    public void interruptedBatchReportsEachRecord() throws Exception {
+        Thread.currentThread().interrupt();
+        try {
+            sink.processBatch(Arrays.asList(1, 2, 3));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(3, errors.size());
+        for(int i=0; i<3; i++){
+            assertEquals(Integer.valueOf(i + 1), errors.get(i).input);
+            assertFalse(errors.get(i) instanceof NonRetryablePipeException);
+        }
+    }
+
+    /**
+     * 关闭之后写入的记录以NonRetryablePipeException交由PipeContext处理，不会以RuntimeException抛出
+     */
+    @Test
+    public void recordsAfterShutdownAreReportedAsNonRetryable() throws Exception {
+        sink.shutdown(1, TimeUnit.SECONDS);
+        sink.process(0);
+        sink.processBatch(Arrays.asList(1, 2));
+        assertEquals(3, errors.size());
+        for(int i=0; i<3; i++){
+            assertTrue(errors.get(i) instanceof NonRetryablePipeException);
+            assertEquals(Integer.valueOf(i), errors.get(i).input);
+        }
+    }
+}
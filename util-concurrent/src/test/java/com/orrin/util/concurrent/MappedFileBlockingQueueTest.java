@@ -0,0 +1,121 @@
+package com.orrin.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author orrin on 2026-10-18
+ */
+public class MappedFileBlockingQueueTest {
+    static final RecordSerializer<Integer> INT_SERIALIZER = new RecordSerializer<Integer>() {
+        @Override
+        public int serializedSize(Integer record) {
+            return 4;
+        }
+
+        @Override
+        public void serialize(Integer record, ByteBuffer buffer) {
+            buffer.putInt(record);
+        }
+
+        @Override
+        public Integer deserialize(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * 重新打开后从第一个未确认的元素开始重新投递，
+     * 这些元素由WorkThreadPipeDecorator处理并计入在途元素，排空的判断不受影响
+     */
+    @Test
+    public void unacknowledgedRecordsAreRedeliveredAndCountedAsInFlight() throws Exception {
+        File directory = temporaryFolder.newFolder("queue");
+        MappedFileBlockingQueue<Integer> queue = newQueue(directory);
+        for(int i=0; i<10; i++){
+            queue.put(i);
+        }
+        //模拟处理中途退出：0已确认，1已出队但未确认
+        Integer first = queue.poll();
+        queue.acknowledge(first);
+        assertEquals(Integer.valueOf(1), queue.poll());
+        queue.close();
+
+        queue = newQueue(directory);
+        assertEquals(9, queue.size());
+
+        final CountDownLatch gate = new CountDownLatch(1);
+        final BlockingQueue<Integer> processed = new LinkedBlockingQueue<Integer>();
+        AbsractPipe<Integer, Void> sink = new AbsractPipe<Integer, Void>() {
+            @Override
+            public Void doProcess(Integer input) throws PipeException {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new PipeException(this, input, "interrupted", e);
+                }
+                processed.add(input);
+                return null;
+            }
+        };
+        WorkThreadPipeDecorator<Integer, Void> stage = new WorkThreadPipeDecorator<Integer, Void>(queue, sink, 2);
+        assertEquals(9, stage.getInFlightCount());
+        assertFalse(stage.awaitDrained(System.nanoTime()));
+
+        stage.init(new PipeContext() {
+            @Override
+            public void handleError(PipeException exp) {
+                exp.printStackTrace();
+            }
+        });
+        stage.process(10);
+        assertEquals(10, stage.getInFlightCount());
+        assertFalse(stage.awaitDrained(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50)));
+
+        gate.countDown();
+        assertTrue(stage.awaitDrained(System.nanoTime() + TimeUnit.SECONDS.toNanos(5)));
+        assertEquals(0, stage.getInFlightCount());
+
+        List<Integer> received = new ArrayList<Integer>();
+        for(int i=0; i<10; i++){
+            Integer item = processed.poll(1, TimeUnit.SECONDS);
+            assertNotNull(item);
+            received.add(item);
+        }
+        Collections.sort(received);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), received);
+
+        stage.shutdown(1, TimeUnit.SECONDS);
+        assertEquals(0, queue.getUnacknowledgedCount());
+        queue.close();
+
+        //全部确认之后重新打开不再投递
+        queue = newQueue(directory);
+        assertEquals(0, queue.size());
+        queue.close();
+    }
+
+    private static MappedFileBlockingQueue<Integer> newQueue(File directory) throws Exception {
+        return new MappedFileBlockingQueue<Integer>(directory, INT_SERIALIZER, 4096, 1024, false, 0);
+    }
+}
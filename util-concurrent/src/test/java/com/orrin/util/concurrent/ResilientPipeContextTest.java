@@ -0,0 +1,198 @@
+package com.orrin.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author orrin on 2026-10-18
+ */
+public class ResilientPipeContextTest {
+    private ExecutorService helperService;
+    private ResilientPipeContext pipeCtx;
+
+    @Before
+    public void setUp() {
+        helperService = Executors.newSingleThreadExecutor();
+        pipeCtx = new ResilientPipeContext(16);
+    }
+
+    @After
+    public void tearDown() {
+        pipeCtx.shutdown(1, TimeUnit.SECONDS);
+        helperService.shutdownNow();
+    }
+
+    /**
+     * 被融合的阶段重试成功后，其输出仍须经过同一FusedPipe中的后续阶段到达下游
+     */
+    @Test
+    public void retriedItemOfFusedStageReachesSink() throws Exception {
+        final Set<Integer> failedOnce = ConcurrentHashMap.newKeySet();
+        AbsractPipe<Integer, Integer> flaky = new AbsractPipe<Integer, Integer>() {
+            @Override
+            public Integer doProcess(Integer input) throws PipeException {
+                if(input % 2 == 0 && failedOnce.add(input)){
+                    throw new PipeException(this, input, "transient failure");
+                }
+                return input;
+            }
+        };
+        AbsractPipe<Integer, Integer> offset = new AbsractPipe<Integer, Integer>() {
+            @Override
+            public Integer doProcess(Integer input) throws PipeException {
+                return input + 1000;
+            }
+        };
+        final BlockingQueue<Integer> sink = new LinkedBlockingQueue<Integer>();
+        AbsractPipe<Integer, Void> collector = new AbsractPipe<Integer, Void>() {
+            @Override
+            public Void doProcess(Integer input) throws PipeException {
+                sink.add(input);
+                return null;
+            }
+        };
+
+        SimplePipeline<Integer, Void> pipeline = new SimplePipeline<Integer, Void>(helperService);
+        pipeline.addPipe(flaky, StageCost.CHEAP);
+        pipeline.addPipe(offset, StageCost.CHEAP);
+        pipeline.addAsWorkerThreadBasedPipe(collector, 1);
+        pipeCtx.setRetryPolicy(flaky, RetryPolicy.exponential(3, 1, 10, TimeUnit.MILLISECONDS));
+        pipeline.init(pipeCtx);
+        //等待各阶段init结束
+        helperService.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+        //flaky与offset被融合为一个物理阶段
+        assertEquals(2, pipeline.getPhysicalPlan().size());
+        assertEquals(2, pipeline.getPhysicalPlan().get(0).getLogicalStages().size());
+
+        for(int i=0; i<10; i++){
+            pipeline.process(i);
+        }
+
+        Set<Integer> received = new HashSet<Integer>();
+        for(int i=0; i<10; i++){
+            Integer out = sink.poll(5, TimeUnit.SECONDS);
+            assertNotNull("item lost after " + received, out);
+            received.add(out);
+        }
+        assertEquals(new HashSet<Integer>(Arrays.asList(1000, 1001, 1002, 1003, 1004, 1005, 1006, 1007, 1008, 1009)),
+                received);
+        assertEquals(5, pipeCtx.getRetryCount());
+        assertNull(pipeCtx.pollDeadLetter());
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 单个工作线程的阶段重试时仍由该工作线程处理，不会与其他元素并发执行
+     */
+    @Test
+    public void retryOfSingleWorkerStageRunsOnItsWorker() throws Exception {
+        final int count = 50;
+        final Set<Integer> failedOnce = ConcurrentHashMap.newKeySet();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final BlockingQueue<Integer> sink = new LinkedBlockingQueue<Integer>();
+        AbsractPipe<Integer, Void> flaky = new AbsractPipe<Integer, Void>() {
+            @Override
+            public Void doProcess(Integer input) throws PipeException {
+                int concurrency = running.incrementAndGet();
+                try {
+                    maxRunning.accumulateAndGet(concurrency, Math::max);
+                    threads.add(Thread.currentThread().getName());
+                    if(failedOnce.add(input)){
+                        throw new PipeException(this, input, "transient failure");
+                    }
+                    sink.add(input);
+                    return null;
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        WorkThreadPipeDecorator<Integer, Void> stage = new WorkThreadPipeDecorator<Integer, Void>(flaky, 1);
+        pipeCtx.setRetryPolicy(flaky, RetryPolicy.exponential(3, 1, 10, TimeUnit.MILLISECONDS));
+        stage.init(pipeCtx);
+
+        for(int i=0; i<count; i++){
+            stage.process(i);
+        }
+        Set<Integer> received = new HashSet<Integer>();
+        for(int i=0; i<count; i++){
+            Integer out = sink.poll(5, TimeUnit.SECONDS);
+            assertNotNull("item lost after " + received, out);
+            received.add(out);
+        }
+        assertEquals(count, received.size());
+        assertEquals(count, pipeCtx.getRetryCount());
+        assertNull(pipeCtx.pollDeadLetter());
+        assertEquals(1, maxRunning.get());
+        assertEquals(1, threads.size());
+        stage.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 限流阶段的重试同样需要获取许可：每个元素失败一次时，共需要两倍于元素个数的许可
+     */
+    @Test
+    public void retryOfRateLimitedStageAcquiresPermit() throws Exception {
+        final int count = 10;
+        final double rate = 100;
+        final Set<Integer> failedOnce = ConcurrentHashMap.newKeySet();
+        final List<Long> invocations = Collections.synchronizedList(new ArrayList<Long>());
+        final BlockingQueue<Integer> sink = new LinkedBlockingQueue<Integer>();
+        AbsractPipe<Integer, Void> flaky = new AbsractPipe<Integer, Void>() {
+            @Override
+            public Void doProcess(Integer input) throws PipeException {
+                invocations.add(System.nanoTime());
+                if(failedOnce.add(input)){
+                    throw new PipeException(this, input, "transient failure");
+                }
+                sink.add(input);
+                return null;
+            }
+        };
+        RateLimitedPipeDecorator<Integer, Void> stage =
+                new RateLimitedPipeDecorator<Integer, Void>(flaky, new RateLimiter(rate, 1));
+        pipeCtx.setRetryPolicy(flaky, RetryPolicy.exponential(3, 1, 10, TimeUnit.MILLISECONDS));
+        stage.init(pipeCtx);
+
+        for(int i=0; i<count; i++){
+            stage.process(i);
+        }
+        for(int i=0; i<count; i++){
+            assertNotNull(sink.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(count, pipeCtx.getRetryCount());
+        assertEquals(2 * count, invocations.size());
+        List<Long> sorted = new ArrayList<Long>(invocations);
+        Collections.sort(sorted);
+        long spanNanos = sorted.get(sorted.size() - 1) - sorted.get(0);
+        long expectedNanos = (long) ((2 * count - 1) * TimeUnit.SECONDS.toNanos(1) / rate);
+        assertTrue("span " + spanNanos + "ns", spanNanos >= expectedNanos * 9 / 10);
+        stage.shutdown(1, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,152 @@
+package com.orrin.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author orrin on 2026-10-18
+ */
+public class SimplePipelineTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExecutorService stageExecutor;
+    private final Map<SimplePipeline<?, ?>, ExecutorService> helperServices =
+            new IdentityHashMap<SimplePipeline<?, ?>, ExecutorService>();
+
+    @After
+    public void tearDown() {
+        if(null != stageExecutor){
+            stageExecutor.shutdownNow();
+        }
+        for(ExecutorService helperService : helperServices.values()){
+            helperService.shutdownNow();
+        }
+    }
+
+    /**
+     * 单线程线程池上的阶段不能与多线程的上一阶段融合，否则其doProcess将由上一阶段的多个线程并发执行
+     */
+    @Test
+    public void singleThreadExecutorStageIsNotFused() throws Exception {
+        stageExecutor = Executors.newSingleThreadExecutor();
+        final int count = 200;
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch done = new CountDownLatch(count);
+        AbsractPipe<Integer, Void> confined = new AbsractPipe<Integer, Void>() {
+            @Override
+            public Void doProcess(Integer input) throws PipeException {
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+                return null;
+            }
+        };
+
+        SimplePipeline<Integer, Object> pipeline = newPipeline();
+        pipeline.addAsWorkerThreadBasedPipe(identity(), 4);
+        pipeline.addPipe(new ThreadPoolPipeDecorator<Integer, Void>(confined, stageExecutor), StageCost.CHEAP);
+        init(pipeline);
+        assertEquals(2, pipeline.getPhysicalPlan().size());
+
+        for(int i=0; i<count; i++){
+            pipeline.process(i);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, threads.size());
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 线程池的最大线程数少于上一阶段的线程个数时不融合，不少于时融合
+     */
+    @Test
+    public void threadPoolStageIsFusedOnlyWhenItAllowsAsManyThreads() throws Exception {
+        stageExecutor = Executors.newFixedThreadPool(2);
+        SimplePipeline<Integer, Object> narrow = newPipeline();
+        narrow.addAsWorkerThreadBasedPipe(identity(), 4);
+        narrow.addPipe(new ThreadPoolPipeDecorator<Integer, Integer>(identity(), stageExecutor), StageCost.CHEAP);
+        init(narrow);
+        assertEquals(2, narrow.getPhysicalPlan().size());
+        narrow.shutdown(1, TimeUnit.SECONDS);
+
+        SimplePipeline<Integer, Object> wide = newPipeline();
+        wide.addAsWorkerThreadBasedPipe(identity(), 2);
+        wide.addPipe(new ThreadPoolPipeDecorator<Integer, Integer>(identity(), stageExecutor), StageCost.CHEAP);
+        init(wide);
+        assertEquals(2, wide.getPhysicalPlan().size());
+        assertEquals(1, wide.getPhysicalPlan().get(1).getLogicalStages().size());
+        assertEquals("FusedPipe", wide.getPhysicalPlan().get(1).getName());
+        wide.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 启用准入控制、批量处理或以持久化队列为工作队列的阶段不融合
+     */
+    @Test
+    public void admissionAndBatchingStagesAreNotFused() throws Exception {
+        stageExecutor = Executors.newFixedThreadPool(8);
+        SimplePipeline<Integer, Object> pipeline = newPipeline();
+        pipeline.addAsWorkerThreadBasedPipe(identity(), 2);
+        pipeline.addPipe(new ThreadPoolPipeDecorator<Integer, Integer>(identity(), stageExecutor, 16,
+                AdmissionPolicy.BLOCK, 0, TimeUnit.MILLISECONDS), StageCost.CHEAP);
+        pipeline.addPipe(new ThreadPoolPipeDecorator<Integer, Integer>(identity(), stageExecutor, 8, 100),
+                StageCost.CHEAP);
+        pipeline.addPipe(new WorkThreadPipeDecorator<Integer, Integer>(identity(), 2, 8, 100), StageCost.CHEAP);
+        MappedFileBlockingQueue<Integer> durableQueue = new MappedFileBlockingQueue<Integer>(
+                temporaryFolder.newFolder("queue"), MappedFileBlockingQueueTest.INT_SERIALIZER, 4096, 1024, false, 0);
+        pipeline.addPipe(new WorkThreadPipeDecorator<Integer, Integer>(durableQueue, identity(), 2), StageCost.CHEAP);
+        init(pipeline);
+        assertEquals(5, pipeline.getPhysicalPlan().size());
+        for(PhysicalStage stage : pipeline.getPhysicalPlan()){
+            assertTrue(stage.isHandOff());
+        }
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+        durableQueue.close();
+    }
+
+    private static AbsractPipe<Integer, Integer> identity() {
+        return new AbsractPipe<Integer, Integer>() {
+            @Override
+            public Integer doProcess(Integer input) throws PipeException {
+                return input;
+            }
+        };
+    }
+
+    private SimplePipeline<Integer, Object> newPipeline() {
+        //SimplePipeline停止时会关闭其helperService，因此每个实例使用各自的helperService
+        ExecutorService helperService = Executors.newSingleThreadExecutor();
+        SimplePipeline<Integer, Object> pipeline = new SimplePipeline<Integer, Object>(helperService);
+        helperServices.put(pipeline, helperService);
+        return pipeline;
+    }
+
+    private void init(SimplePipeline<?, ?> pipeline) throws Exception {
+        pipeline.init(new PipeContext() {
+            @Override
+            public void handleError(PipeException exp) {
+                exp.printStackTrace();
+            }
+        });
+        //各阶段的init在helperService中执行，等待其结束
+        helperServices.get(pipeline).submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+}
@@ -0,0 +1,65 @@
+package com.orrin.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * @author orrin on 2026-10-18
+ */
+public class TerminatableWorkerThreadTest {
+
+    /**
+     * doProcessBatch抛出Error时整个批次以该Error失败，工作者线程继续处理此后的任务
+     */
+    @Test
+    public void errorInBatchFailsTheBatchAndKeepsWorkerAlive() throws Exception {
+        final Error error = new Error("simulated");
+        final AtomicBoolean failed = new AtomicBoolean();
+        TerminatableWorkerThread<Integer, Integer> worker = new TerminatableWorkerThread<Integer, Integer>(
+                new LinkedBlockingQueue<Runnable>(), new BatchTaskProcssor<Integer, Integer>() {
+            @Override
+            public List<Integer> doProcessBatch(List<Integer> tasks) throws Exception {
+                if(failed.compareAndSet(false, true)){
+                    throw error;
+                }
+                return new ArrayList<Integer>(tasks);
+            }
+
+            @Override
+            public Integer doProcess(Integer task) throws Exception {
+                return task;
+            }
+        }, 8, 0, TimeUnit.MILLISECONDS);
+
+        //启动前提交，使这些任务在同一批次中处理
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for(int i=0; i<3; i++){
+            futures.add(worker.submit(i));
+        }
+        worker.start();
+        for(Future<Integer> future : futures){
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("batch should fail");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+
+        assertEquals(Integer.valueOf(3), worker.submit(3).get(5, TimeUnit.SECONDS));
+        assertTrue(worker.isAlive());
+        worker.terminate();
+    }
+}